@@ -189,19 +189,27 @@ public class BIG {
         return tb;
     }
 
+    /* r[k]+=x*y+c, and return high part. As muladd(), but x is split into half-words x0, x1 by the caller
+       once per outer loop, and the low part is written in place rather than returned in a new array */
+    static long mac(long x0, long x1, long y, long c, long[] r, int k) {
+        long y0 = y & HMASK, y1 = (y >> HBITS);
+        long bot = x0 * y0;
+        long top = x1 * y1;
+        long mid = x0 * y1 + x1 * y0;
+        bot += ((mid & HMASK) << HBITS) + c + r[k];
+        r[k] = bot & BMASK;
+        return top + (mid >> HBITS) + (bot >> CONFIG_BIG.BASEBITS);
+    }
+
     /* this*=x, where x is >NEXCESS */
     public long pmul(int c) {
-        long ak, carry = 0;
-        long[] cr = new long[2];
+        long carry = 0;
+        long x0 = (long)c & HMASK, x1 = ((long)c >> HBITS);
 
         for (int i = 0; i < NLEN; i++) {
-            ak = w[i];
+            long ak = w[i];
             w[i] = 0;
-
-            cr = muladd(ak, (long)c, carry, w[i]);
-            carry = cr[0];
-            w[i] = cr[1];
-
+            carry = mac(x0, x1, ak, carry, w, i);
         }
         return carry;
     }
@@ -209,13 +217,10 @@ public class BIG {
     /* return this*c and catch overflow in DBIG */
     public DBIG pxmul(int c) {
         DBIG m = new DBIG(0);
-        long[] cr = new long[2];
         long carry = 0;
-        for (int j = 0; j < NLEN; j++) {
-            cr = muladd(w[j], (long)c, carry, m.w[j]);
-            carry = cr[0];
-            m.w[j] = cr[1];
-        }
+        long x0 = (long)c & HMASK, x1 = ((long)c >> HBITS);
+        for (int j = 0; j < NLEN; j++)
+            carry = mac(x0, x1, w[j], carry, m.w, j);
         m.w[NLEN] = carry;
         return m;
     }
@@ -235,17 +240,13 @@ public class BIG {
 
     /* return a*b where result fits in a BIG */
     public static BIG smul(BIG a, BIG b) {
-        long carry;
-        long[] cr = new long[2];
+        long x0, x1, carry;
         BIG c = new BIG(0);
         for (int i = 0; i < NLEN; i++) {
             carry = 0;
-            for (int j = 0; j < NLEN; j++)
-                if (i + j < NLEN) {
-                    cr = muladd(a.w[i], b.w[j], carry, c.w[i + j]);
-                    carry = cr[0];
-                    c.w[i + j] = cr[1];
-                }
+            x0 = a.w[i] & HMASK; x1 = (a.w[i] >> HBITS);
+            for (int j = 0; j < NLEN - i; j++)
+                carry = mac(x0, x1, b.w[j], carry, c.w, i + j);
         }
         return c;
     }
@@ -254,16 +255,13 @@ public class BIG {
     /* Inputs must be normed */
     public static DBIG mul(BIG a, BIG b) {
         DBIG c = new DBIG(0);
-        long carry;
-        long[] cr = new long[2];
+        long x0, x1, carry;
 
         for (int i = 0; i < NLEN; i++) {
             carry = 0;
-            for (int j = 0; j < NLEN; j++) {
-                cr = muladd(a.w[i], b.w[j], carry, c.w[i + j]);
-                carry = cr[0];
-                c.w[i + j] = cr[1];
-            }
+            x0 = a.w[i] & HMASK; x1 = (a.w[i] >> HBITS);
+            for (int j = 0; j < NLEN; j++)
+                carry = mac(x0, x1, b.w[j], carry, c.w, i + j);
             c.w[NLEN + i] = carry;
         }
 
@@ -274,23 +272,19 @@ public class BIG {
     /* Input must be normed */
     public static DBIG sqr(BIG a) {
         DBIG c = new DBIG(0);
-        long carry;
-        long[] cr = new long[2];
+        long x0, x1, carry;
 
         for (int i = 0; i < NLEN; i++) {
             carry = 0;
-            for (int j = i + 1; j < NLEN; j++) {
-                cr = muladd(2 * a.w[i], a.w[j], carry, c.w[i + j]);
-                carry = cr[0];
-                c.w[i + j] = cr[1];
-            }
+            x0 = (2 * a.w[i]) & HMASK; x1 = ((2 * a.w[i]) >> HBITS);
+            for (int j = i + 1; j < NLEN; j++)
+                carry = mac(x0, x1, a.w[j], carry, c.w, i + j);
             c.w[NLEN + i] = carry;
         }
 
         for (int i = 0; i < NLEN; i++) {
-            cr = muladd(a.w[i], a.w[i], 0, c.w[2 * i]);
-            c.w[2 * i + 1] += cr[0];
-            c.w[2 * i] = cr[1];
+            x0 = a.w[i] & HMASK; x1 = (a.w[i] >> HBITS);
+            c.w[2 * i + 1] += mac(x0, x1, a.w[i], 0, c.w, 2 * i);
         }
         c.norm();
         return c;
@@ -298,8 +292,7 @@ public class BIG {
 
     static BIG monty(BIG md, long MC, DBIG d) {
         BIG b;
-        long m, carry;
-        long[] cr = new long[2];
+        long m, x0, x1, carry;
         for (int i = 0; i < NLEN; i++) {
             if (MC == -1) m = (-d.w[i]) & BMASK;
             else {
@@ -308,11 +301,9 @@ public class BIG {
             }
 
             carry = 0;
-            for (int j = 0; j < NLEN; j++) {
-                cr = muladd(m, md.w[j], carry, d.w[i + j]);
-                carry = cr[0];
-                d.w[i + j] = cr[1];
-            }
+            x0 = m & HMASK; x1 = (m >> HBITS);
+            for (int j = 0; j < NLEN; j++)
+                carry = mac(x0, x1, md.w[j], carry, d.w, i + j);
             d.w[NLEN + i] += carry;
         }
 
@@ -323,6 +314,69 @@ public class BIG {
         return b;
     }
 
+    /* Montgomery reduction step of the fused methods below. t[0..NLEN-1],tn holds the running total */
+    /* one multiple of md is added to zero the bottom word, then t is shifted down one word. Returns new tn */
+    private static long mstep(long[] t, long tn, BIG md, long MC) {
+        long m, carry;
+        if (MC == -1) m = (-t[0]) & BMASK;
+        else {
+            if (MC == 1) m = t[0];
+            else m = (MC * t[0]) & BMASK;
+        }
+        long x0 = m & HMASK, x1 = (m >> HBITS);
+
+        carry = mac(x0, x1, md.w[0], 0, t, 0);
+        for (int j = 1; j < NLEN; j++) {
+            carry = mac(x0, x1, md.w[j], carry, t, j);
+            t[j - 1] = t[j];
+        }
+        tn += carry;
+        t[NLEN - 1] = tn & BMASK;
+        return (tn >> CONFIG_BIG.BASEBITS);
+    }
+
+    /* copy the running total of the fused methods below into r, leaving the scratch t all zero again */
+    private static void mdone(BIG r, long[] t, long tn) {
+        for (int i = 0; i < NLEN; i++) {
+            r.w[i] = t[i];
+            t[i] = 0;
+        }
+        r.w[NLEN - 1] += (tn << CONFIG_BIG.BASEBITS);
+        r.norm();
+    }
+
+    /* r=a*b/2^(NLEN*BASEBITS) mod md, using Coarsely Integrated Operand Scanning */
+    /* Same result as monty(md,MC,mul(a,b)), but without the intermediate DBIG */
+    /* Inputs must be normed. r may be the same as a or b. t is NLEN words of caller's scratch, all zero on entry and on exit */
+    static void mulmonty(BIG r, BIG a, BIG b, BIG md, long MC, long[] t) {
+        long tn = 0;
+
+        for (int i = 0; i < NLEN; i++) {
+            long carry = 0;
+            long x0 = a.w[i] & HMASK, x1 = (a.w[i] >> HBITS);
+            for (int j = 0; j < NLEN; j++)
+                carry = mac(x0, x1, b.w[j], carry, t, j);
+            tn = mstep(t, tn + carry, md, MC);
+        }
+        mdone(r, t, tn);
+    }
+
+    /* r=a^2/2^(NLEN*BASEBITS) mod md. As mulmonty(r,a,a,md,MC,t), but each cross product is only calculated once */
+    /* Input must be normed. r may be the same as a */
+    static void sqrmonty(BIG r, BIG a, BIG md, long MC, long[] t) {
+        long tn = 0;
+
+        for (int i = 0; i < NLEN; i++) {
+            long ai = a.w[i];
+            long carry = mac(ai & HMASK, ai >> HBITS, ai, 0, t, i);
+            long x0 = (2 * ai) & HMASK, x1 = ((2 * ai) >> HBITS);
+            for (int j = i + 1; j < NLEN; j++)
+                carry = mac(x0, x1, a.w[j], carry, t, j);
+            tn = mstep(t, tn + carry, md, MC);
+        }
+        mdone(r, t, tn);
+    }
+
     public static int ssn(BIG r, BIG a, BIG m) {
         int n = NLEN - 1;
         m.w[0] = (m.w[0] >> 1) | ((m.w[1] << (CONFIG_BIG.BASEBITS - 1)) & BMASK);
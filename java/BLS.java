@@ -55,7 +55,7 @@ public class BLS {
 
 /* output u \in F_p */
     static BIG hash_to_base(int hash,int hlen,byte[] DST,byte[] M,int ctr) {
-        BIG q = new BIG(ROM.Modulus);
+        BIG q = CURVE_CONST.Modulus;
         int L = ceil(q.nbits()+CONFIG_CURVE.AESKEY*8,8);
 
         String tag= new String("H2C");
@@ -96,7 +96,7 @@ public class BLS {
 
     /* generate key pair, private key S, public key W */
     public static int KeyPairGenerate(byte[] IKM, byte[] S, byte[] W) {
-        BIG r = new BIG(ROM.CURVE_Order);     
+        BIG r = CURVE_CONST.CURVE_Order;     
         int L = ceil(3*ceil(r.nbits(),8),2);
         ECP2 G = ECP2.generator();
         String salt=new String("BLS-SIG-KEYGEN-SALT-");
@@ -133,10 +133,10 @@ public class BLS {
         D.neg();
         ECP2 PK = ECP2.fromBytes(W);
 
-// Use multi-pairing mechanism and precomputation on G2
+// Use multi-pairing mechanism and precomputation on G2, and on the public key if it is seen often
         FP12[] r = PAIR.initmp();
         PAIR.another_pc(r, G2_TAB, D);
-        PAIR.another(r, PK, HM);
+        PAIR.another_cached(r, W, PK, HM);
         FP12 v = PAIR.miller(r);
 
 //.. or alternatively
@@ -149,4 +149,142 @@ public class BLS {
             return BLS_OK;
         return BLS_FAIL;
     }
+
+    /* Aggregate signatures SIGS[] into a single signature SIG */
+    public static int aggregateSignatures(byte[] SIG, byte[][] SIGS) {
+        if (SIGS.length == 0) return BLS_FAIL;
+        ECP S = new ECP();
+        for (int i = 0; i < SIGS.length; i++) {
+            ECP D = ECP.fromBytes(SIGS[i]);
+            if (D.is_infinity()) return BLS_FAIL;
+            S.add(D);
+        }
+        S.toBytes(SIG, true);
+        return BLS_OK;
+    }
+
+    /* sum of public keys, or null if any of them is invalid */
+    static ECP2 sum_keys(byte[][] WS) {
+        if (WS.length == 0) return null;
+        ECP2 K = new ECP2();
+        for (int i = 0; i < WS.length; i++) {
+            ECP2 PK = ECP2.fromBytes(WS[i]);
+            if (PK.is_infinity()) return null;
+            K.add(PK);
+        }
+        return K;
+    }
+
+    /* Aggregate public keys WS[] into a single public key W */
+    public static int aggregatePublicKeys(byte[] W, byte[][] WS) {
+        ECP2 K = sum_keys(WS);
+        if (K == null) return BLS_FAIL;
+        K.toBytes(W, true);
+        return BLS_OK;
+    }
+
+    /* Verify aggregate signature SIG on messages M[i] signed by public keys W[i] - one Miller loop and one final exponentiation */
+    /* Protection against rogue key attacks (distinct messages, or proof of possession of keys) is up to the caller */
+    public static int aggregateVerify(byte[][] M, byte[][] W, byte[] SIG) {
+        if (M.length == 0 || M.length != W.length) return BLS_FAIL;
+
+        ECP D = ECP.fromBytes(SIG);
+        if (!PAIR.G1member(D)) return BLS_FAIL;
+        D.neg();
+
+        FP12[] r = PAIR.initmp();
+        PAIR.another_pc(r, G2_TAB, D);
+        for (int i = 0; i < M.length; i++) {
+            ECP2 PK = ECP2.fromBytes(W[i]);
+            if (PK.is_infinity()) return BLS_FAIL;
+            PAIR.another_cached(r, W[i], PK, bls_hash_to_point(M[i]));
+        }
+        FP12 v = PAIR.miller(r);
+
+        v = PAIR.fexp(v);
+        if (v.isunity())
+            return BLS_OK;
+        return BLS_FAIL;
+    }
+
+    /* Verify aggregate signature SIG on a single message M signed by all of the public keys W[i] - keys are added in G2, so only two pairings */
+    /* Protection against rogue key attacks (proof of possession of keys) is up to the caller */
+    public static int fastAggregateVerify(byte[] M, byte[][] W, byte[] SIG) {
+        ECP2 PK = sum_keys(W);
+        if (PK == null) return BLS_FAIL;
+
+        ECP HM = bls_hash_to_point(M);
+        ECP D = ECP.fromBytes(SIG);
+        if (!PAIR.G1member(D)) return BLS_FAIL;
+        D.neg();
+
+        FP12[] r = PAIR.initmp();
+        PAIR.another_pc(r, G2_TAB, D);
+        PAIR.another_cached(r, PK, HM);
+        FP12 v = PAIR.miller(r);
+
+        v = PAIR.fexp(v);
+        if (v.isunity())
+            return BLS_OK;
+        return BLS_FAIL;
+    }
+
+    /* Verify signatures SIG[i] on messages M[i] using public keys W[i] all at once, RES[i] is set to BLS_OK or BLS_FAIL for each */
+    /* Pairing equations are combined using small random multipliers, so one Miller loop and one final exponentiation checks the lot */
+    /* If the batch fails it is split in half and each half retried, until the bad signatures are found */
+    public static int batchVerify(RAND RNG, byte[][] SIG, byte[][] M, byte[][] W, int[] RES) {
+        int i, m = 0, n = SIG.length;
+        BIG r = CURVE_CONST.CURVE_Order;
+        ECP[] D = new ECP[n];
+        ECP[] HM = new ECP[n];
+        ECP2[] PK = new ECP2[n];
+        BIG[] e = new BIG[n];
+        int[] idx = new int[n];
+
+        for (i = 0; i < n; i++) {
+            RES[i] = BLS_FAIL;
+            D[i] = ECP.fromBytes(SIG[i]);
+            if (!PAIR.G1member(D[i])) continue;
+            PK[i] = ECP2.fromBytes(W[i]);
+            if (PK[i].is_infinity()) continue;
+            e[i] = BIG.randtrunc(r, 64, RNG);
+            if (e[i].iszilch()) e[i].inc(1);
+            HM[i] = bls_hash_to_point(M[i]).mulVartime(e[i]); /* once here, rather than at every level of bisection */
+            RES[i] = BLS_OK;
+            idx[m++] = i;
+        }
+        if (m > 0) batch_check(idx, 0, m, D, HM, W, PK, e, RES);
+
+        for (i = 0; i < n; i++)
+            if (RES[i] != BLS_OK) return BLS_FAIL;
+        return BLS_OK;
+    }
+
+    /* check entries idx[lo..hi-1], bisecting on failure and marking the bad ones in RES. HM[i] is already multiplied by e[i] */
+    private static void batch_check(int[] idx, int lo, int hi, ECP[] D, ECP[] HM, byte[][] W, ECP2[] PK, BIG[] e, int[] RES) {
+        int j, k = hi - lo;
+        ECP[] P = new ECP[k];
+        BIG[] s = new BIG[k];
+
+        FP12[] r = PAIR.initmp();
+        for (j = 0; j < k; j++) {
+            int i = idx[lo + j];
+            P[j] = D[i];
+            s[j] = e[i];
+            PAIR.another_cached(r, W[i], PK[i], HM[i]);
+        }
+        ECP S = ECP.muln(P, s);
+        S.neg();
+        PAIR.another_pc(r, G2_TAB, S);
+        FP12 v = PAIR.miller(r);
+
+        v = PAIR.fexp(v);
+        if (v.isunity()) return;
+        if (k == 1) {
+            RES[idx[lo]] = BLS_FAIL;
+            return;
+        }
+        batch_check(idx, lo, lo + k / 2, D, HM, W, PK, e, RES);
+        batch_check(idx, lo + k / 2, hi, D, HM, W, PK, e, RES);
+    }
 }
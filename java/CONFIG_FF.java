@@ -35,4 +35,6 @@ package org.miracl.core.XXX;
 public class CONFIG_FF {
     /* RSA/DH modulus length as multiple of BIGBITS */
     public static final int FFLEN = @ML@;
+    /* Karatsuba multiplication hands over to schoolbook at this many BIGs */
+    public static final int KARATSUBA = @KT@;
 }
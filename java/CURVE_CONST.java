@@ -0,0 +1,47 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+
+/* Curve constants, converted from the ROM once on first use and then shared */
+/* Class initialisation is thread-safe. These objects are shared by the whole library, so they are package-private
+   and must NOT be modified - make a copy first. Code outside the package builds its own from ROM */
+
+package org.miracl.core.XXX;
+
+final class CURVE_CONST {
+    static final BIG Modulus = new BIG(ROM.Modulus);
+    static final BIG CURVE_Order = new BIG(ROM.CURVE_Order);
+    static final BIG CURVE_Cof = new BIG(ROM.CURVE_Cof);
+    static final FP CURVE_B = new FP(new BIG(ROM.CURVE_B));
+
+    private CURVE_CONST() {}
+}
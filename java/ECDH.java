@@ -55,12 +55,10 @@ public final class ECDH {
      * otherwise it is generated randomly internally */
     public static int KEY_PAIR_GENERATE(RAND RNG, byte[] S, byte[] W) {
         BIG r, s;
-        ECP G, WP;
+        ECP WP;
         int res = 0;
 
-        G = ECP.generator();
-
-        r = new BIG(ROM.CURVE_Order);
+        r = CURVE_CONST.CURVE_Order;
 
         if (RNG == null) {
             s = BIG.fromBytes(S);
@@ -71,7 +69,7 @@ public final class ECDH {
 
         s.toBytes(S);
 
-        WP = G.mul(s);
+        WP = ECP.mulgen(s);
         WP.toBytes(W, false); // To use point compression on public keys, change to true
 
         return res;
@@ -83,13 +81,13 @@ public final class ECDH {
         ECP WP = ECP.fromBytes(W);
         int nb, res = 0;
 
-        r = new BIG(ROM.CURVE_Order);
+        r = CURVE_CONST.CURVE_Order;
 
         if (WP.is_infinity()) res = INVALID_PUBLIC_KEY;
 
         if (res == 0) {
 
-            q = new BIG(ROM.Modulus);
+            q = CURVE_CONST.Modulus;
             nb = q.nbits();
             k = new BIG(1); k.shl((nb + 4) / 2);
             k.add(q);
@@ -100,7 +98,7 @@ public final class ECDH {
                 WP.dbl();
             }
 
-            if (!k.isunity()) WP = WP.mul(k);
+            if (!k.isunity()) WP = WP.mulVartime(k);
             if (WP.is_infinity()) res = INVALID_PUBLIC_KEY;
         }
         return res;
@@ -120,7 +118,7 @@ public final class ECDH {
         if (W.is_infinity()) res = ERROR;
 
         if (res == 0) {
-            r = new BIG(ROM.CURVE_Order);
+            r = CURVE_CONST.CURVE_Order;
             s.mod(r);
 
             W = W.mul(s);
@@ -133,15 +131,36 @@ public final class ECDH {
         return res;
     }
 
+    /* As above, but with the other party's public key already decoded into a context */
+    public static int SVDP_DH(byte[] S, PublicKeyContext WC, byte[] Z) {
+        BIG r, s;
+        ECP W;
+        int res = 0;
+        byte[] T = new byte[EFS];
+
+        if (!WC.valid()) return ERROR;
+
+        s = BIG.fromBytes(S);
+        r = CURVE_CONST.CURVE_Order;
+        s.mod(r);
+
+        W = WC.mul(s);
+        if (W.is_infinity()) res = ERROR;
+        else {
+            W.getX().toBytes(T);
+            for (int i = 0; i < EFS; i++) Z[i] = T[i];
+        }
+        return res;
+    }
+
     /* IEEE ECDSA Signature, C and D are signature on F using private key S */
     public static int SP_DSA(int sha, RAND RNG, byte[] S, byte[] F, byte[] C, byte[] D) {
         byte[] T = new byte[EFS];
         BIG r, s, f, c, d, u, vx, w;
-        ECP G, V;
+        ECP V;
         byte[] B = HMAC.GPhashit(HMAC.MC_SHA2, sha, CONFIG_BIG.MODBYTES, F, -1, null );
 
-        G = ECP.generator();
-        r = new BIG(ROM.CURVE_Order);
+        r = CURVE_CONST.CURVE_Order;
 
         s = BIG.fromBytes(S);
         f = BIG.fromBytes(B);
@@ -154,8 +173,7 @@ public final class ECDH {
             u = BIG.randomnum(r, RNG);
             w = BIG.randomnum(r, RNG); /* side channel masking */
 
-            V.copy(G);
-            V = V.mul(u);
+            V = ECP.mulgen(u);
             vx = V.getX();
             c.copy(vx);
             c.mod(r);
@@ -189,7 +207,7 @@ public final class ECDH {
         byte[] B = HMAC.GPhashit(HMAC.MC_SHA2, sha, CONFIG_BIG.MODBYTES, F, -1, null);
 
         G = ECP.generator();
-        r = new BIG(ROM.CURVE_Order);
+        r = CURVE_CONST.CURVE_Order;
 
         c = BIG.fromBytes(C);
         d = BIG.fromBytes(D);
@@ -208,7 +226,7 @@ public final class ECDH {
             else {
                 P = new ECP();
                 P.copy(WP);
-                P = P.mul2(h2, G, f);
+                P = P.mul2Vartime(h2, G, f);
                 if (P.is_infinity()) res = ERROR;
                 else {
                     d = P.getX();
@@ -221,6 +239,155 @@ public final class ECDH {
         return res;
     }
 
+    /* As above, but with the public key already decoded into a context - faster when a key verifies many signatures */
+    public static int VP_DSA(int sha, PublicKeyContext WC, byte[] F, byte[] C, byte[] D) {
+        BIG r, f, c, d, h2;
+        int res = 0;
+        ECP P;
+
+        byte[] B = HMAC.GPhashit(HMAC.MC_SHA2, sha, CONFIG_BIG.MODBYTES, F, -1, null);
+
+        r = CURVE_CONST.CURVE_Order;
+
+        c = BIG.fromBytes(C);
+        d = BIG.fromBytes(D);
+        f = BIG.fromBytes(B);
+
+        if (!WC.valid() || c.iszilch() || BIG.comp(c, r) >= 0 || d.iszilch() || BIG.comp(d, r) >= 0)
+            res = ERROR;
+
+        if (res == 0) {
+            d.invmodp(r);
+            f.copy(BIG.modmul(f, d, r));
+            h2 = BIG.modmul(c, d, r);
+
+            P = WC.mul2(h2, f);
+            if (P.is_infinity()) res = ERROR;
+            else {
+                d = P.getX();
+                d.mod(r);
+                if (BIG.comp(d, c) != 0) res = ERROR;
+            }
+        }
+
+        return res;
+    }
+
+    /* Verify a batch of ECDSA signatures C[i],D[i] on F[i] using public keys W[i]. RES[i] is set to 0 or ERROR for each */
+    /* Signatures are checked in groups, using one random linear combination per group. R=(c,y) is rebuilt from each signature, and */
+    /* as the sign of y is lost, every sign pattern is tried against the combined point. A group that fails is checked one by one */
+    /* Best suited to prime order Weierstrass curves, where x(R) is always less than the group order */
+    public static int VP_DSA_BATCH(int sha, RAND RNG, byte[][] W, byte[][] F, byte[][] C, byte[][] D, int[] RES) {
+        int i, j, k, m, n = W.length;
+        BIG r = CURVE_CONST.CURVE_Order;
+        BIG[] u1 = new BIG[n];
+        BIG[] u2 = new BIG[n];
+        BIG[] d = new BIG[n];
+        ECP[] WP = new ECP[n];
+        ECP[] R = new ECP[n];
+        int[] idx = new int[n];
+        int res = 0;
+
+        m = 0;
+        for (i = 0; i < n; i++) {
+            RES[i] = ERROR;
+            BIG c = BIG.fromBytes(C[i]);
+            d[i] = BIG.fromBytes(D[i]);
+            if (c.iszilch() || BIG.comp(c, r) >= 0 || d[i].iszilch() || BIG.comp(d[i], r) >= 0) continue;
+            WP[i] = ECP.fromBytes(W[i]);
+            if (WP[i].is_infinity()) continue;
+            u1[i] = BIG.fromBytes(HMAC.GPhashit(HMAC.MC_SHA2, sha, CONFIG_BIG.MODBYTES, F[i], -1, null));
+            u2[i] = c;
+            RES[i] = 0;
+            idx[m++] = i;
+        }
+
+// invert all of the d[i] together - Montgomery's trick
+        if (m > 0) {
+            BIG[] pre = new BIG[m];
+            BIG acc = new BIG(1);
+            for (j = 0; j < m; j++) {
+                pre[j] = new BIG(acc);
+                acc = BIG.modmul(acc, d[idx[j]], r);
+            }
+            acc.invmodp(r);
+            for (j = m - 1; j >= 0; j--) {
+                i = idx[j];
+                BIG di = BIG.modmul(pre[j], acc, r);
+                acc = BIG.modmul(acc, d[i], r);
+                u1[i] = BIG.modmul(u1[i], di, r);
+                u2[i] = BIG.modmul(u2[i], di, r);
+                R[i] = new ECP(BIG.fromBytes(C[i]), 0);
+            }
+        }
+
+        for (j = 0; j < m; j += k) {
+            k = m - j;
+            if (k > DSA_BATCH) k = DSA_BATCH;
+            if (!dsa_group(RNG, idx, j, k, u1, u2, WP, R)) {
+                for (int t = j; t < j + k; t++) {
+                    i = idx[t];
+                    if (VP_DSA(sha, W[i], F[i], C[i], D[i]) != 0) RES[i] = ERROR;
+                }
+            }
+        }
+
+        for (i = 0; i < n; i++)
+            if (RES[i] != 0) res = ERROR;
+        return res;
+    }
+
+/* Signatures per random linear combination - the sign search costs 2^(DSA_BATCH-1) point additions */
+    private static final int DSA_BATCH = 8;
+
+/* check that u1.G+u2.W = +/-R for each of the k signatures starting at idx[j], using random multipliers z */
+    private static boolean dsa_group(RAND RNG, int[] idx, int j, int k, BIG[] u1, BIG[] u2, ECP[] WP, ECP[] R) {
+        int i, t, g;
+        BIG r = CURVE_CONST.CURVE_Order;
+        ECP[] P = new ECP[k + 1];
+        BIG[] e = new BIG[k + 1];
+        ECP[] Z = new ECP[k];
+        ECP[] Z2 = new ECP[k];
+        int[] s = new int[k];
+        BIG eg = new BIG(0);
+
+        for (t = 0; t < k; t++) {
+            i = idx[j + t];
+            if (R[i].is_infinity()) return false;
+            BIG z = BIG.randtrunc(r, 64, RNG);
+            if (z.iszilch()) z.inc(1);
+            eg.add(BIG.modmul(z, u1[i], r)); eg.mod(r);
+            P[t + 1] = WP[i];
+            e[t + 1] = BIG.modmul(z, u2[i], r);
+            Z[t] = R[i].mulVartime(z);
+            if (t > 0) { /* the sign of Z[0] is never flipped, so it needs no double */
+                Z2[t] = new ECP(Z[t]); Z2[t].dbl();
+            }
+        }
+        P[0] = ECP.generator();
+        e[0] = eg;
+
+        ECP A = ECP.muln(P, e);
+        if (A.is_infinity()) return false;
+        ECP NA = new ECP(A); NA.neg();
+
+// Gray code walk through the sign patterns of Z[1..k-1], starting with all positive
+        ECP T = new ECP();
+        for (t = 0; t < k; t++) {
+            T.add(Z[t]);
+            s[t] = 1;
+        }
+        for (g = 1; ; g++) {
+            if (T.equals(A) || T.equals(NA)) return true;
+            if (g == (1 << (k - 1))) break;
+            t = 1 + Integer.numberOfTrailingZeros(g);
+            if (s[t] == 1) T.sub(Z2[t]);
+            else T.add(Z2[t]);
+            s[t] = -s[t];
+        }
+        return false;
+    }
+
     /* IEEE1363 ECIES encryption. Encryption of plaintext M uses public key W and produces ciphertext V,C,T */
     public static byte[] ECIES_ENCRYPT(int sha, byte[] P1, byte[] P2, RAND RNG, byte[] W, byte[] M, byte[] V, byte[] T) {
         int i, len;
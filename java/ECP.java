@@ -123,6 +123,22 @@ public final class ECP {
 		cmove(MP,(int)(m&1));
 	}
 
+/* Constant time select from a pre-computed table of odd multiples, of any size */
+	private void selectw(ECP W[],int b)
+	{
+		ECP MP=new ECP(); 
+		int m=b>>31;
+		int babs=(b^m)-m;
+
+		babs=(babs-1)/2;
+		for (int i=0;i<W.length;i++)
+			cmove(W[i],teq(babs,i));
+
+		MP.copy(this);
+		MP.neg();
+		cmove(MP,m&1);
+	}
+
 /* Test P == Q */
 	public boolean equals(ECP Q) {
 
@@ -175,7 +191,7 @@ public final class ECP {
 
 		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.WEIERSTRASS)
 		{ // x^3+Ax+B
-			FP b=new FP(new BIG(ROM.CURVE_B));
+			FP b=CURVE_CONST.CURVE_B;
 			r.mul(x);
 			if (ROM.CURVE_A==-3)
 			{
@@ -188,7 +204,7 @@ public final class ECP {
 		}
 		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.EDWARDS)
 		{ // (Ax^2-1)/(Bx^2-1) 
-			FP b=new FP(new BIG(ROM.CURVE_B));
+			FP b=new FP(CURVE_CONST.CURVE_B);
 
 			FP one=new FP(1);
 			b.mul(r);
@@ -277,6 +293,29 @@ public final class ECP {
 		}
 		z.copy(one);
 	}
+
+/* convert an array of points to affine, sharing a single inversion */
+	public static void batchAffine(ECP[] P) {
+		int i,n=P.length;
+		FP one=new FP(1);
+		FP[] Z=new FP[n];
+		for (i=0;i<n;i++)
+		{
+			Z[i]=new FP(P[i].z);
+			if (P[i].is_infinity()) Z[i].zero();
+		}
+		FP.batchInverse(Z);
+		for (i=0;i<n;i++)
+		{
+			if (Z[i].iszilch()) continue;
+			P[i].x.mul(Z[i]); P[i].x.reduce();
+			if (CONFIG_CURVE.CURVETYPE!=CONFIG_CURVE.MONTGOMERY)
+			{
+				P[i].y.mul(Z[i]); P[i].y.reduce();
+			}
+			P[i].z.copy(one);
+		}
+	}
 /* extract x as a BIG */
 	public BIG getX()
 	{
@@ -332,7 +371,7 @@ public final class ECP {
 		if (compress)
 		{
 			b[0]=0x02;
-			if (y.redc().parity()==1) b[0]=0x03;
+			if (W.y.redc().parity()==1) b[0]=0x03;
 			return;
 		}
 
@@ -345,7 +384,7 @@ public final class ECP {
 	public static ECP fromBytes(byte[] b)
 	{
 		byte[] t=new byte[CONFIG_BIG.MODBYTES];
-		BIG p=new BIG(ROM.Modulus);
+		BIG p=CURVE_CONST.Modulus;
 
 
 		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.MONTGOMERY)
@@ -435,7 +474,7 @@ public final class ECP {
 				FP b=new FP();
 
 				if (ROM.CURVE_B_I==0)
-					b.copy(new FP(new BIG(ROM.CURVE_B)));
+					b.copy(CURVE_CONST.CURVE_B);
 
 				t0.sqr();  //1    x^2
 				t1.sqr();  //2    y^2
@@ -609,7 +648,7 @@ public final class ECP {
 				FP b=new FP();
 
 				if (ROM.CURVE_B_I==0)
-					b.copy(new FP(new BIG(ROM.CURVE_B)));
+					b.copy(CURVE_CONST.CURVE_B);
 
 				t0.mul(Q.x); //1
 				t1.mul(Q.y); //2
@@ -698,7 +737,7 @@ public final class ECP {
 		
 			if (ROM.CURVE_B_I==0)
 			{
-				FP b=new FP(new BIG(ROM.CURVE_B));
+				FP b=CURVE_CONST.CURVE_B;
 				E.mul(b);
 			}
 			else
@@ -963,6 +1002,262 @@ public final class ECP {
 		return S;
 	}
 
+/* Multi-scalar multiplication - return k[0].P[0]+k[1].P[1]+...+k[n-1].P[n-1] */
+/* Not constant time, so only for use with public values. Not for Montgomery curves */
+	public static ECP muln(ECP[] P,BIG[] k) {
+		int i,nb,n=P.length;
+		nb=0;
+		for (i=0;i<n;i++)
+		{
+			int b=k[i].nbits();
+			if (b>nb) nb=b;
+		}
+		if (n<MULN_PIPPENGER) return muln_wnaf(P,k,nb);
+		return muln_pippenger(P,k,nb);
+	}
+
+/* Convert e of at most nb bits to width-(w+1) NAF, least significant digit first */
+/* Digits are odd and in the range -(2^w-1) to 2^w-1, to index a table of odd multiples P,3P,..,(2^w-1).P */
+	private static byte[] wnaf(BIG e,int w,int nb) {
+		int j,d;
+		byte[] wd=new byte[nb+1];
+		BIG t=new BIG(e);
+		for (j=0;!t.iszilch();j++)
+		{
+			if (t.parity()==1)
+			{
+				d=t.lastbits(w+1);
+				if (d>(1<<w)) d-=(2<<w);
+				if (d>0) t.dec(d);
+				else t.inc(-d);
+				t.norm();
+				wd[j]=(byte)d;
+			}
+			t.fshr(1);
+		}
+		return wd;
+	}
+
+/* S+=d.P, for odd d given T, the table of odd multiples of P */
+	private static void nafadd(ECP S,ECP[] T,int d) {
+		if (d>0) S.add(T[(d-1)/2]);
+		if (d<0) S.sub(T[(-d-1)/2]);
+	}
+
+/* Table of n odd multiples P,3P,..,(2n-1).P */
+	private static ECP[] oddtable(ECP P,int n) {
+		ECP[] T=new ECP[n];
+		ECP Q=new ECP(P);
+		Q.dbl();
+		T[0]=new ECP(P);
+		for (int i=1;i<n;i++)
+		{
+			T[i]=new ECP(T[i-1]);
+			T[i].add(Q);
+		}
+		return T;
+	}
+
+/* Table of odd multiples P,3P,..,(2^w-1).P, for a point that is multiplied over and over, like a long-lived public key */
+	public static ECP[] oddmults(ECP P,int w) {
+		ECP[] T=oddtable(P,1<<(w-1));
+		batchAffine(T);
+		return T;
+	}
+
+/* return e.P, given T=oddmults(P,w). Constant time, signed w-bit windows */
+	public static ECP tmul(ECP[] T,int w,BIG e) {
+		if (e.iszilch() || T[0].is_infinity()) return new ECP();
+		int i,j,nb,s,ns;
+		BIG mt=new BIG();
+		BIG t=new BIG(e);
+		ECP P=new ECP();
+		ECP Q=new ECP();
+		ECP C=new ECP();
+		byte[] wd=new byte[2+(BIG.NLEN*CONFIG_BIG.BASEBITS+w-1)/w];
+
+// make exponent odd - add 2P if even, P if odd 
+		Q.copy(T[0]); Q.dbl();
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		Q.cmove(T[0],ns);
+		C.copy(Q);
+
+		nb=1+(t.nbits()+w-1)/w;
+
+// convert exponent to signed w-bit window 
+		for (i=0;i<nb;i++)
+		{
+			wd[i]=(byte)(t.lastbits(w+1)-(1<<w));
+			t.dec(wd[i]); t.norm();
+			t.fshr(w);
+		}
+		wd[nb]=(byte)t.lastbits(w+1);
+
+		P.selectw(T,wd[nb]);
+		for (i=nb-1;i>=0;i--)
+		{
+			Q.selectw(T,wd[i]);
+			for (j=0;j<w;j++)
+				P.dbl();
+			P.add(Q);
+		}
+		P.sub(C); /* apply correction */
+		P.affine();
+		return P;
+	}
+
+/* return e.P+f.G, given T=oddmults(P,w) and where G is the fixed generator */
+/* Not constant time, so only for use with public values, as in signature verification */
+	public static ECP tmul2(ECP[] T,int w,BIG e,BIG f) {
+		int i,nb=e.nbits();
+		byte[] wd=wnaf(e,w,nb);
+		ECP S=new ECP();
+		for (i=nb;i>=0;i--)
+		{
+			S.dbl();
+			nafadd(S,T,wd[i]);
+		}
+		S.add(mulgen(f));
+		S.affine();
+		return S;
+	}
+
+/* wNAF table size for variable time multiplication by an nb-bit scalar - 2^(w-1) precomputed points, about nb/(w+2) additions */
+	private static int vtwindow(int nb) {
+		int w=3;
+		while (w<7 && (1<<w)+nb/(w+3) < (1<<(w-1))+nb/(w+2)) w++;
+		return w;
+	}
+
+/* return e.this - faster than mul(e), but NOT constant time, so only for public e, as in signature verification */
+	public ECP mulVartime(BIG e) {
+		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.MONTGOMERY) return mul(e);
+		if (e.iszilch() || is_infinity()) return new ECP();
+		int i,nb=e.nbits();
+		int w=vtwindow(nb);
+		ECP[] T=oddtable(this,1<<(w-1));
+		byte[] wd=wnaf(e,w,nb);
+		ECP S=new ECP();
+		for (i=nb;i>=0;i--)
+		{
+			S.dbl();
+			nafadd(S,T,wd[i]);
+		}
+		S.affine();
+		return S;
+	}
+
+/* return e.this+f.Q - faster than mul2(e,Q,f), but NOT constant time, so only for public e and f */
+	public ECP mul2Vartime(BIG e,ECP Q,BIG f) {
+		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.MONTGOMERY) return mul2(e,Q,f);
+		int i,nb=e.nbits();
+		if (f.nbits()>nb) nb=f.nbits();
+		int w=vtwindow(nb);
+		ECP[] TP=oddtable(this,1<<(w-1));
+		ECP[] TQ=oddtable(Q,1<<(w-1));
+		byte[] we=wnaf(e,w,nb);
+		byte[] wf=wnaf(f,w,nb);
+		ECP S=new ECP();
+		for (i=nb;i>=0;i--)
+		{
+			S.dbl();
+			nafadd(S,TP,we[i]);
+			nafadd(S,TQ,wf[i]);
+		}
+		S.affine();
+		return S;
+	}
+
+/* Switch from interleaved wNAF to the bucket method at this many terms */
+	private static final int MULN_PIPPENGER=128;
+
+/* Interleaved width-5 wNAF, each point with its own table of odd multiples P,3P,..,15P */
+	private static ECP muln_wnaf(ECP[] P,BIG[] k,int nb) {
+		int i,j,n=P.length;
+		ECP S=new ECP();
+		ECP[][] W=new ECP[n][];
+		byte[][] w=new byte[n][];
+
+		for (i=0;i<n;i++)
+		{
+			W[i]=oddtable(P[i],8);
+			w[i]=wnaf(k[i],4,nb);
+		}
+
+		for (j=nb;j>=0;j--)
+		{
+			S.dbl();
+			for (i=0;i<n;i++)
+				nafadd(S,W[i],w[i][j]);
+		}
+		S.affine();
+		return S;
+	}
+
+/* Pippenger bucket method, with signed c-bit digits so only 2^(c-1) buckets are needed per window */
+	private static ECP muln_pippenger(ECP[] P,BIG[] k,int nb) {
+		int i,j,c,d,nw,best,half,n=P.length;
+		BIG t=new BIG();
+		ECP S=new ECP();
+		ECP R=new ECP();
+		ECP T=new ECP();
+
+// choose window size to minimise the number of additions (nb/c).(n+2^c)
+		c=2; best=-1;
+		for (j=2;j<=16;j++)
+		{
+			int cost=((nb+j)/j)*(n+(1<<j));
+			if (best<0 || cost<best) {best=cost; c=j;}
+		}
+		half=1<<(c-1);
+		nw=1+nb/c;
+
+// convert exponents to signed c-bit digits, in the range -2^(c-1) to 2^(c-1)
+		int[][] w=new int[n][nw];
+		for (i=0;i<n;i++)
+		{
+			t.copy(k[i]);
+			for (j=0;j<nw;j++)
+			{
+				d=t.lastbits(c);
+				t.fshr(c);
+				if (d>half)
+				{
+					d-=2*half;
+					t.inc(1); t.norm();
+				}
+				w[i][j]=d;
+			}
+		}
+
+		ECP[] B=new ECP[half];
+		for (j=0;j<half;j++) B[j]=new ECP();
+
+		for (j=nw-1;j>=0;j--)
+		{
+			for (i=0;i<c;i++) S.dbl();
+			for (i=0;i<half;i++) B[i].inf();
+			for (i=0;i<n;i++)
+			{
+				d=w[i][j];
+				if (d>0) B[d-1].add(P[i]);
+				if (d<0) B[-d-1].sub(P[i]);
+			}
+// sum of (i+1).B[i], by running sums from the top bucket down
+			R.inf(); T.inf();
+			for (i=half-1;i>=0;i--)
+			{
+				R.add(B[i]);
+				T.add(R);
+			}
+			S.add(T);
+		}
+		S.affine();
+		return S;
+	}
+
 // multiply a point by the curves cofactor
 	public void cfp()
 	{
@@ -980,7 +1275,7 @@ public final class ECP {
 			//affine();
 			return;
 		}
-		BIG c=new BIG(ROM.CURVE_Cof);
+		BIG c=CURVE_CONST.CURVE_Cof;
 		copy(mul(c));
 	}
 
@@ -1030,7 +1325,7 @@ public final class ECP {
             FP w1=new FP();
             FP w2=new FP();
             FP one=new FP(1);
-            FP B=new FP(new BIG(ROM.CURVE_B));
+            FP B=new FP(CURVE_CONST.CURVE_B);
             FP A=new FP(B);
             int sgn=t.sign();
             if (ROM.CURVE_A==1) {
@@ -1116,7 +1411,7 @@ public final class ECP {
             FP X2=new FP();
             FP X3=new FP();
             FP one=new FP(1);
-            FP B=new FP(new BIG(ROM.CURVE_B));
+            FP B=new FP(CURVE_CONST.CURVE_B);
             FP Y=new FP();
             FP t=new FP(h);
             BIG x=new BIG(0);
@@ -1180,7 +1475,7 @@ public final class ECP {
 /* Map byte string to curve point */
 	public static ECP mapit(byte[] h)
 	{
-		BIG q=new BIG(ROM.Modulus);
+		BIG q=CURVE_CONST.Modulus;
         DBIG dx=DBIG.fromBytes(h);
         BIG x=dx.mod(q);
 		ECP P=hashit(x);
@@ -1204,5 +1499,80 @@ public final class ECP {
 		return G;
 	}
 
+/* Fixed-base comb for the generator - GTAB.W[i][j]=(2j+1).16^i.G, in affine form */
+/* Built once on first use, and then only read, so it can be shared across threads */
+	private static final class GTAB {
+		static final int NB=1+(CURVE_CONST.CURVE_Order.nbits()+4)/4;
+		static final ECP G2;
+		static final ECP[][] W=new ECP[NB+1][8];
+
+		static {
+			int i,j;
+			ECP B=generator();
+			ECP Q=new ECP();
+			for (i=0;i<=NB;i++)
+			{
+				Q.copy(B); Q.dbl();
+				W[i][0]=new ECP(B);
+				for (j=1;j<8;j++)
+				{
+					W[i][j]=new ECP(W[i][j-1]);
+					W[i][j].add(Q);
+				}
+				B.dbl(); B.dbl(); B.dbl(); B.dbl();
+			}
+			G2=new ECP(W[0][0]); G2.dbl(); G2.affine();
+			ECP[] T=new ECP[8*(NB+1)];
+			for (i=0;i<=NB;i++)
+				for (j=0;j<8;j++)
+					T[8*i+j]=W[i][j];
+			batchAffine(T);
+		}
+	}
+
+/* return e.G, where G is the fixed generator. Constant time, no doublings */
+	public static ECP mulgen(BIG e) {
+		if (CONFIG_CURVE.CURVETYPE==CONFIG_CURVE.MONTGOMERY)
+			return generator().mul(e);
+
+		int i,s,ns;
+		int nb=GTAB.NB;
+		BIG mt=new BIG();
+		BIG t=new BIG(e);
+		ECP P=new ECP();
+		ECP Q=new ECP();
+		ECP C=new ECP();
+		byte[] w=new byte[nb+1];
+
+		t.mod(CURVE_CONST.CURVE_Order);
+		if (t.iszilch()) return P;
+
+// make exponent odd - add 2G if even, G if odd 
+		s=t.parity();
+		t.inc(1); t.norm(); ns=t.parity(); mt.copy(t); mt.inc(1); mt.norm();
+		t.cmove(mt,s);
+		C.copy(GTAB.G2);
+		C.cmove(GTAB.W[0][0],ns);
+
+// convert exponent to signed 4-bit window, always the same number of windows
+		for (i=0;i<nb;i++)
+		{
+			w[i]=(byte)(t.lastbits(5)-16);
+			t.dec(w[i]); t.norm();
+			t.fshr(4);
+		}
+		w[nb]=(byte)t.lastbits(5);
+
+		P.select(GTAB.W[nb],w[nb]);
+		for (i=0;i<nb;i++)
+		{
+			Q.select(GTAB.W[i],w[i]);
+			P.add(Q);
+		}
+		P.sub(C); /* apply correction */
+		P.affine();
+		return P;
+	}
+
 }
 
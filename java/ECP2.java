@@ -147,6 +147,26 @@ public final class ECP2 {
 		y.mul(z); y.reduce();
 		z.copy(one);
 	}
+
+/* convert an array of points to affine, sharing a single inversion */
+	public static void batchAffine(ECP2[] P) {
+		int i,n=P.length;
+		FP2 one=new FP2(1);
+		FP2[] Z=new FP2[n];
+		for (i=0;i<n;i++)
+		{
+			Z[i]=new FP2(P[i].z);
+			if (P[i].is_infinity()) Z[i].zero();
+		}
+		FP2.batchInverse(Z);
+		for (i=0;i<n;i++)
+		{
+			if (Z[i].iszilch()) continue;
+			P[i].x.mul(Z[i]); P[i].x.reduce();
+			P[i].y.mul(Z[i]); P[i].y.reduce();
+			P[i].z.copy(one);
+		}
+	}
 /* extract affine x as FP2 */
 	public FP2 getX()
 	{
@@ -244,7 +264,7 @@ public final class ECP2 {
 		//x.norm();
 		FP2 r=new FP2(x);
 		r.sqr();
-		FP2 b=new FP2(new BIG(ROM.CURVE_B));
+		FP2 b=new FP2(CURVE_CONST.CURVE_B);
 
 		if (CONFIG_CURVE.SEXTIC_TWIST==CONFIG_CURVE.D_TYPE)
 		{
@@ -593,7 +613,7 @@ public final class ECP2 {
     { // SWU method
         int sgn,ne;
         FP2 W=new FP2(1);
-        FP2 B=new FP2(new BIG(ROM.CURVE_B));
+        FP2 B=new FP2(CURVE_CONST.CURVE_B);
         FP t=new FP(h);
         FP s=new FP(-3);
         FP one=new FP(1);
@@ -647,7 +667,7 @@ public final class ECP2 {
 /* Map octet string to curve point */
 	public static ECP2 mapit(byte[] h)
 	{
-		BIG q=new BIG(ROM.Modulus);
+		BIG q=CURVE_CONST.Modulus;
 		DBIG dx=DBIG.fromBytes(h);
         BIG x=dx.mod(q);
 		
@@ -659,17 +679,9 @@ public final class ECP2 {
 /* clear the cofactor */
     public void cfp()
     {
-		BIG Fra=new BIG(ROM.Fra);
-		BIG Frb=new BIG(ROM.Frb);
-		FP2 X=new FP2(Fra,Frb);
-
-		if (CONFIG_CURVE.SEXTIC_TWIST==CONFIG_CURVE.M_TYPE)
-		{
-			X.inverse();
-			X.norm();
-		}
+		FP2 X=PAIR_CONST.TWIST_FROB;
 
-		BIG x=new BIG(ROM.CURVE_Bnx);
+		BIG x=PAIR_CONST.CURVE_Bnx;
 
 /* Fast Hashing to G2 - Fuentes-Castaneda, Knapp and Rodriguez-Henriquez */
 
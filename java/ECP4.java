@@ -148,6 +148,26 @@ public final class ECP4 {
 		z.copy(one);
 	}
 
+/* convert an array of points to affine, sharing a single inversion */
+	public static void batchAffine(ECP4[] P) {
+		int i,n=P.length;
+		FP4 one=new FP4(1);
+		FP4[] Z=new FP4[n];
+		for (i=0;i<n;i++)
+		{
+			Z[i]=new FP4(P[i].z);
+			if (P[i].is_infinity()) Z[i].zero();
+		}
+		FP4.batchInverse(Z);
+		for (i=0;i<n;i++)
+		{
+			if (Z[i].iszilch()) continue;
+			P[i].x.mul(Z[i]); P[i].x.reduce();
+			P[i].y.mul(Z[i]); P[i].y.reduce();
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract affine x as FP4 */
 	public FP4 getX()
 	{
@@ -183,6 +203,7 @@ public final class ECP4 {
 	{
 		byte[] t=new byte[CONFIG_BIG.MODBYTES];
 		ECP4 W=new ECP4(this);
+		W.affine();
 		int MB=CONFIG_BIG.MODBYTES;
         b[0]=0x06;
 
@@ -279,7 +300,7 @@ public final class ECP4 {
 	public static FP4 RHS(FP4 x) {
 		FP4 r=new FP4(x);
 		r.sqr();
-		FP4 b=new FP4(new FP2(new BIG(ROM.CURVE_B)));
+		FP4 b=new FP4(new FP2(CURVE_CONST.CURVE_B));
 
 		if (CONFIG_CURVE.SEXTIC_TWIST==CONFIG_CURVE.D_TYPE)
 		{
@@ -463,9 +484,7 @@ public final class ECP4 {
 	}
 
 	public static FP2[] frob_constants() {
-			BIG Fra=new BIG(ROM.Fra);
-			BIG Frb=new BIG(ROM.Frb);
-			FP2 X=new FP2(Fra,Frb);
+			FP2 X=PAIR_CONST.FROB;
 
 			FP2 F0=new FP2(X); F0.sqr();
 			FP2 F2=new FP2(F0);
@@ -692,7 +711,7 @@ public final class ECP4 {
     { // SWU method
         int sgn,ne;
         FP4 W=new FP4(1);
-        FP4 B=new FP4(new FP2(new BIG(ROM.CURVE_B)));
+        FP4 B=new FP4(new FP2(CURVE_CONST.CURVE_B));
         FP t=new FP(h);
         FP s=new FP(-3);
         FP one=new FP(1);
@@ -737,7 +756,7 @@ public final class ECP4 {
 /* Map octet string to curve point */
 	public static ECP4 mapit(byte[] h)
 	{
-		BIG q=new BIG(ROM.Modulus);
+		BIG q=CURVE_CONST.Modulus;
 		DBIG dx=DBIG.fromBytes(h);
         BIG x=dx.mod(q);
 		
@@ -751,7 +770,7 @@ public final class ECP4 {
 	public void cfp()
 	{
 		FP2[] F=ECP4.frob_constants();
-		BIG x=new BIG(ROM.CURVE_Bnx);
+		BIG x=PAIR_CONST.CURVE_Bnx;
 
 /* Efficient hash maps to G2 on BLS curves - Budroni, Pintore */
 
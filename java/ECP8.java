@@ -148,6 +148,26 @@ public final class ECP8 {
 		z.copy(one);
 	}
 
+/* convert an array of points to affine, sharing a single inversion */
+	public static void batchAffine(ECP8[] P) {
+		int i,n=P.length;
+		FP8 one=new FP8(1);
+		FP8[] Z=new FP8[n];
+		for (i=0;i<n;i++)
+		{
+			Z[i]=new FP8(P[i].z);
+			if (P[i].is_infinity()) Z[i].zero();
+		}
+		FP8.batchInverse(Z);
+		for (i=0;i<n;i++)
+		{
+			if (Z[i].iszilch()) continue;
+			P[i].x.mul(Z[i]); P[i].x.reduce();
+			P[i].y.mul(Z[i]); P[i].y.reduce();
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract affine x as FP8 */
 	public FP8 getX()
 	{
@@ -330,7 +350,7 @@ public final class ECP8 {
 	public static FP8 RHS(FP8 x) {
 		FP8 r=new FP8(x);
 		r.sqr();
-		FP8 b=new FP8(new FP4(new FP2(new BIG(ROM.CURVE_B))));
+		FP8 b=new FP8(new FP4(new FP2(CURVE_CONST.CURVE_B)));
 
 		if (CONFIG_CURVE.SEXTIC_TWIST==CONFIG_CURVE.D_TYPE)
 		{
@@ -514,9 +534,7 @@ public final class ECP8 {
 	}
 
 	public static FP2[] frob_constants() {
-			BIG Fra=new BIG(ROM.Fra);
-			BIG Frb=new BIG(ROM.Frb);
-			FP2 X=new FP2(Fra,Frb);
+			FP2 X=PAIR_CONST.FROB;
 
 			FP2 F0=new FP2(X); F0.sqr();
 			FP2 F2=new FP2(F0);
@@ -840,7 +858,7 @@ public final class ECP8 {
     { // SWU method
         int sgn,ne;
         FP8 W=new FP8(1);
-        FP8 B=new FP8(new FP4(new FP2(new BIG(ROM.CURVE_B))));
+        FP8 B=new FP8(new FP4(new FP2(CURVE_CONST.CURVE_B)));
         FP t=new FP(h);
         FP s=new FP(-3);
         FP one=new FP(1);
@@ -885,7 +903,7 @@ public final class ECP8 {
 /* Map octet string to curve point */
 	public static ECP8 mapit(byte[] h)
 	{
-		BIG q=new BIG(ROM.Modulus);
+		BIG q=CURVE_CONST.Modulus;
 		DBIG dx=DBIG.fromBytes(h);
         BIG x=dx.mod(q);
 		
@@ -898,7 +916,7 @@ public final class ECP8 {
 	public void cfp()
 	{
 		FP2[] F=ECP8.frob_constants();
-		BIG x=new BIG(ROM.CURVE_Bnx);
+		BIG x=PAIR_CONST.CURVE_Bnx;
 
 /* Efficient hash maps to G2 on BLS curves - Budroni, Pintore */
 
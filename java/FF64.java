@@ -44,6 +44,7 @@ public final class FF {
 /* Finite field support - for RSA, DH etc. */
 	public static final int FF_BITS=(BIG.BIGBITS*CONFIG_FF.FFLEN); /* Finite Field Size in bits - must be 256.2^n */
 	public static final int HFLEN=(CONFIG_FF.FFLEN/2);  /* Useful for half-size RSA private key operations */
+	static final int karatsuba=CONFIG_FF.KARATSUBA;  /* schoolbook below this many BIGs - see TesttimeRSA to calibrate it */
 
 	public static final int P_MBITS=CONFIG_BIG.MODBYTES*8;
 	public static final int P_TBITS=(P_MBITS%CONFIG_BIG.BASEBITS);
@@ -369,17 +370,67 @@ public final class FF {
 		}
 	}
 
-/* in-place swapping using xor - side channel resistant - lengths must be the same */
-	private static void cswap(FF a,FF b,int d)
+/* schoolbook z=x*y a column at a time, for small n - if lower only the bottom half of z is found */
+	private void smul(int vp,FF x,int xp,FF y,int yp,int n,boolean lower)
 	{
-		for (int i=0;i<a.length;i++)
+		int i,k,m=lower?n:2*n-1;
+		DBIG c=new DBIG(0);
+		BIG h=null;
+		for (i=0;i<n;i++)
 		{
-			a.v[i].cswap(b.v[i],d);
+			x.v[xp+i].norm();
+			y.v[yp+i].norm();
 		}
+		for (k=0;k<m;k++)
+		{
+			for (i=Math.max(0,k-n+1);i<=Math.min(k,n-1);i++)
+			{
+				c.add(BIG.mul(x.v[xp+i],y.v[yp+k-i]));
+				c.norm();
+			}
+			h=c.split(8*CONFIG_BIG.MODBYTES);
+			v[vp+k].copy(c);
+			c=new DBIG(h);
+		}
+		if (!lower) v[vp+m]=h;
+	}
+
+/* schoolbook z=x^2 a column at a time, for small n */
+	private void ssqr(int vp,FF x,int xp,int n)
+	{
+		int i,k;
+		DBIG c=new DBIG(0);
+		DBIG s;
+		BIG h=null;
+		for (i=0;i<n;i++) x.v[xp+i].norm();
+		for (k=0;k<2*n-1;k++)
+		{
+			s=new DBIG(0);
+			for (i=Math.max(0,k-n+1);2*i<k;i++)
+			{
+				s.add(BIG.mul(x.v[xp+i],x.v[xp+k-i]));
+				s.norm();
+			}
+			s.add(s);
+			if (k%2==0) s.add(BIG.sqr(x.v[xp+k/2]));
+			s.add(c);
+			s.norm();
+			h=s.split(8*CONFIG_BIG.MODBYTES);
+			v[vp+k].copy(s);
+			c=new DBIG(h);
+		}
+		v[vp+2*n-1]=h;
+		rnorm(vp,2*n);
 	}
 
 /* z=x*y, t is workspace */
 	private void karmul(int vp,FF x,int xp,FF y,int yp,FF t,int tp,int n)
+	{
+		karmul(vp,x,xp,y,yp,t,tp,n,karatsuba);
+	}
+
+/* as above, with schoolbook multiplication below kt BIGs */
+	private void karmul(int vp,FF x,int xp,FF y,int yp,FF t,int tp,int n,int kt)
 	{
 		int nd2;
 		if (n==1)
@@ -391,15 +442,21 @@ public final class FF {
 			v[vp].copy(d);
 			return;
 		}
+		if (n<=kt)
+		{
+			smul(vp,x,xp,y,yp,n,false);
+			rnorm(vp,2*n);
+			return;
+		}
 		nd2=n/2;
 		radd(vp,x,xp,x,xp+nd2,nd2);
 		rnorm(vp,nd2);                   /* Important - required for 32-bit build */
 		radd(vp+nd2,y,yp,y,yp+nd2,nd2);
 		rnorm(vp+nd2,nd2);               /* Important - required for 32-bit build */
 
-		t.karmul(tp,this,vp,this,vp+nd2,t,tp+n,nd2);
-		karmul(vp,x,xp,y,yp,t,tp+n,nd2);
-		karmul(vp+n,x,xp+nd2,y,yp+nd2,t,tp+n,nd2);
+		t.karmul(tp,this,vp,this,vp+nd2,t,tp+n,nd2,kt);
+		karmul(vp,x,xp,y,yp,t,tp+n,nd2,kt);
+		karmul(vp+n,x,xp+nd2,y,yp+nd2,t,tp+n,nd2,kt);
 		t.rdec(tp,this,vp,n);
 		t.rdec(tp,this,vp+n,n);
 		rinc(vp+nd2,t,tp,n);
@@ -407,6 +464,11 @@ public final class FF {
 	}
 
 	private void karsqr(int vp,FF x,int xp,FF t,int tp,int n)
+	{
+		karsqr(vp,x,xp,t,tp,n,karatsuba);
+	}
+
+	private void karsqr(int vp,FF x,int xp,FF t,int tp,int n,int kt)
 	{
 		int nd2;
 		if (n==1)
@@ -418,10 +480,15 @@ public final class FF {
 			return;
 		}	
 
+		if (n<=kt)
+		{
+			ssqr(vp,x,xp,n);
+			return;
+		}
 		nd2=n/2;
-		karsqr(vp,x,xp,t,tp+n,nd2);
-		karsqr(vp+n,x,xp+nd2,t,tp+n,nd2);
-		t.karmul(tp,x,xp,x,xp+nd2,t,tp+n,nd2);
+		karsqr(vp,x,xp,t,tp+n,nd2,kt);
+		karsqr(vp+n,x,xp+nd2,t,tp+n,nd2,kt);
+		t.karmul(tp,x,xp,x,xp+nd2,t,tp+n,nd2,kt);
 		rinc(vp+nd2,t,tp,n);
 		rinc(vp+nd2,t,tp,n);
 		rnorm(vp+nd2,n);
@@ -436,6 +503,12 @@ public final class FF {
 			v[vp].copy(BIG.smul(x.v[xp],y.v[yp]));
 			return;
 		}
+		if (n<=karatsuba)
+		{
+			smul(vp,x,xp,y,yp,n,true);
+			rnorm(vp,-n);  /* truncate it */
+			return;
+		}
 		nd2=n/2;
 		karmul(vp,x,xp,y,yp,t,tp+n,nd2);
 		t.karmul_lower(tp,x,xp+nd2,y,yp,t,tp+n,nd2);
@@ -471,22 +544,34 @@ public final class FF {
 
 	/* z=x*y. Assumes x and y are of same length. */
 	public static FF mul(FF x,FF y)
+	{
+		return mul(x,y,karatsuba);
+	}
+
+	/* as above, but with schoolbook multiplication below kt BIGs - for calibration */
+	static FF mul(FF x,FF y,int kt)
 	{
 		int n=x.length;
 		FF z=new FF(2*n);
 		FF t=new FF(2*n);
-		z.karmul(0,x,0,y,0,t,0,n);
+		z.karmul(0,x,0,y,0,t,0,n,kt);
 		return z;
 	}
 
 	/* z=x^2 */
 	public static FF sqr(FF x)
+	{
+		return sqr(x,karatsuba);
+	}
+
+	/* as above, with threshold kt */
+	static FF sqr(FF x,int kt)
 	{
 		int n=x.length;
 		FF z=new FF(2*n);
 		FF t=new FF(2*n);
 
-		z.karsqr(0,x,0,t,0,n);
+		z.karsqr(0,x,0,t,0,n,kt);
 		return z;
 	}
 
@@ -548,7 +633,7 @@ public final class FF {
 
 /* Set r=this mod b */
 /* this is of length - 2*n */
-/* r,b is of length - n */
+/* r,b is of length - n, b need not fill it */
 	public FF dmod(FF b)
 	{
 		int k,n=b.length;
@@ -560,6 +645,11 @@ public final class FF {
 		x.norm();
 		m.dsucopy(b); k=BIG.BIGBITS*n;
 
+		while (comp(x,m)>=0 && m.v[2*n-1].nbits()<P_MBITS)
+		{ /* b has spare top bits - line it up with x first */
+			m.shl();
+			k++;
+		}
 		while (comp(x,m)>=0)
 		{
 			x.sub(m);
@@ -583,6 +673,38 @@ public final class FF {
 		return r;
 	}
 
+/* As above, but using two Montgomery reductions rather than long division */
+/* this is of length 2*n and less than m.N*2^(n.BIGBITS) - as for a CRT half of an RSA modulus */
+/* Or this is longer, a power of 2 times n, and is reduced n words at a time from the top - as for */
+/* the primes of a multi-prime RSA modulus */
+	public FF dmod(FFMontContext m)
+	{
+		int n=m.N.length;
+		if (length>2*n)
+		{ /* r=(r.2^(n.BIGBITS)+next n words) mod N, each less than N*2^(n.BIGBITS) as r<N */
+			FF x=new FF(2*n);
+			FF r=new FF(n);
+			for (int i=length-n;i>=0;i-=n)
+			{
+				for (int j=0;j<n;j++)
+				{
+					x.v[j].copy(v[i+j]);
+					x.v[n+j].copy(r.v[j]);
+				}
+				r=x.dmod(m);
+			}
+			return r;
+		}
+		FF p=new FF(n); p.copy(m.N);
+		if (n==1) return dmod(p);
+		FF ND=new FF(n); ND.copy(m.ND);
+		FF x=new FF(2*n); x.copy(this);
+		FF r=x.reduce(p,ND);
+		r.modmul(m.R2,p,ND);
+		r.mod(p);
+		return r;
+	}
+
 /* Set return=1/this mod p. Binary method - a<p on entry */
 
 	public void invmodp(FF p)
@@ -702,7 +824,7 @@ public final class FF {
 	}
 
 	/* U=1/a mod 2^m - Arazi & Qi */
-	private FF invmod2m()
+	FF invmod2m()
 	{
 		int i,n=length;
 
@@ -794,64 +916,104 @@ public final class FF {
 		}
 	}
 
-	/* this=this^e mod p using side-channel resistant Montgomery Ladder, for large e */
-	public void skpow(FF e,FF p)
+/* fixed window size for side-channel resistant exponentiation to an nb-bit exponent */
+	private static int skwindow(int nb)
 	{
-		int i,b,n=p.length;
-		FF R0=new FF(n);
-		FF R1=new FF(n);
-		FF ND=p.invmod2m();
+		if (nb>=2048) return 6;
+		if (nb>=512) return 5;
+		return 4;
+	}
+
+/* this=T[d] in constant time - every entry is touched, whatever d */
+	private void select(FF[] T,int d)
+	{
+		for (int k=0;k<T.length;k++)
+		{
+			int b=((k^d)-1)>>31;
+			for (int i=0;i<length;i++)
+				v[i].cmove(T[k].v[i],b&1);
+		}
+	}
+
+/* this=this^e mod p, given the exponent as w-bit windows, most significant first. Side-channel */
+/* resistant - the same sequence of squarings and multiplications for every exponent of the same length */
+	private void skpow(int[] wd,int w,FFMontContext m)
+	{
+		int i,j,n=m.N.length;
+		FF[] T=new FF[1<<w];
+		FF S=new FF(n);
+		FF p=new FF(n); p.copy(m.N);
+		FF ND=new FF(n); ND.copy(m.ND);
 
 		mod(p);
-		R0.one();
-		R1.copy(this);
-		R0.nres(p);
-		R1.nres(p);
+		T[0]=new FF(n); T[0].copy(m.ONE);
+		T[1]=new FF(n); T[1].copy(this);
+		T[1].modmul(m.R2,p,ND);
+		for (i=2;i<(1<<w);i++)
+		{
+			T[i]=new FF(n); T[i].copy(T[i-1]);
+			T[i].modmul(T[1],p,ND);
+		}
 
-		for (i=8*CONFIG_BIG.MODBYTES*n-1;i>=0;i--)
+		select(T,wd[0]);
+		for (i=1;i<wd.length;i++)
 		{
-			b=e.v[i/BIG.BIGBITS].bit(i%BIG.BIGBITS);
-			copy(R0);
-			modmul(R1,p,ND);
+			for (j=0;j<w;j++)
+				modsqr(p,ND);
+			S.select(T,wd[i]);
+			modmul(S,p,ND);
+		}
+		redc(p,ND);
+	}
+
+	/* this=this^e mod p, side-channel resistant, for large e */
+	public void skpow(FF e,FF p)
+	{
+		skpow(e,new FFMontContext(p));
+	}
 
-			cswap(R0,R1,b);
-			R0.modsqr(p,ND);
+	/* as above, with the Montgomery constants for the modulus precomputed */
+	public void skpow(FF e,FFMontContext m)
+	{
+		int i,j,b,nb=8*CONFIG_BIG.MODBYTES*m.N.length;
+		int w=skwindow(nb);
+		int[] wd=new int[(nb+w-1)/w];
 
-			R1.copy(this);
-			cswap(R0,R1,b);
+		for (i=0;i<wd.length;i++)
+		{ /* windows, top one zero padded */
+			for (j=0;j<w;j++)
+			{
+				b=(wd.length-i)*w-1-j;
+				wd[i]<<=1;
+				if (b<nb) wd[i]+=e.v[b/BIG.BIGBITS].bit(b%BIG.BIGBITS);
+			}
 		}
-		copy(R0);
-		redc(p,ND);
+		skpow(wd,w,m);
 	}
 
-	/* this =this^e mod p using side-channel resistant Montgomery Ladder, for short e */
+	/* this=this^e mod p, side-channel resistant, for short e */
 	public void skpow(BIG e,FF p)
 	{
-		int i,b,n=p.length;
-		FF R0=new FF(n);
-		FF R1=new FF(n);
-		FF ND=p.invmod2m();
+		skpow(e,new FFMontContext(p));
+	}
 
-		mod(p);
-		R0.one();
-		R1.copy(this);
-		R0.nres(p);
-		R1.nres(p);
+	/* as above, with the Montgomery constants for the modulus precomputed */
+	public void skpow(BIG e,FFMontContext m)
+	{
+		int i,j,b,nb=8*CONFIG_BIG.MODBYTES;
+		int w=skwindow(nb);
+		int[] wd=new int[(nb+w-1)/w];
 
-		for (i=8*CONFIG_BIG.MODBYTES-1;i>=0;i--)
+		for (i=0;i<wd.length;i++)
 		{
-			b=e.bit(i);
-			copy(R0);
-			modmul(R1,p,ND);
-
-			cswap(R0,R1,b);
-			R0.modsqr(p,ND);
-
-			R1.copy(this);
-			cswap(R0,R1,b);
+			for (j=0;j<w;j++)
+			{
+				b=(wd.length-i)*w-1-j;
+				wd[i]<<=1;
+				if (b<nb) wd[i]+=e.bit(b);
+			}
 		}
-		copy(R0);
-		redc(p,ND);
+		skpow(wd,w,m);
 	}
 
 	/* raise to an integer power - right-to-left method */
@@ -885,17 +1047,55 @@ public final class FF {
 		redc(p,ND);
 	}
 
+	/* as above, with the Montgomery constants for the modulus precomputed */
+	public void power(int e,FFMontContext m)
+	{
+		int n=m.N.length;
+		FF w=new FF(n);
+		FF p=new FF(n); p.copy(m.N);
+		FF ND=new FF(n); ND.copy(m.ND);
+		boolean f=true;
+
+		w.copy(this);
+		w.modmul(m.R2,p,ND);
+
+		if (e==2)
+		{
+			copy(w);
+			modsqr(p,ND);
+		}
+		else for (; ; )
+		{
+			if (e%2==1)
+			{
+				if (f) copy(w);
+				else modmul(w,p,ND);
+				f=false;
+			}
+			e>>=1;
+			if (e==0) break;
+			w.modsqr(p,ND);
+		}
+		redc(p,ND);
+	}
+
 	/* this=this^e mod p, faster but not side channel resistant */
 	public void pow(FF e,FF p)
 	{
-		int i,b,n=p.length;
+		pow(e,new FFMontContext(p));
+	}
+
+	/* as above, with the Montgomery constants for the modulus precomputed */
+	public void pow(FF e,FFMontContext m)
+	{
+		int i,b,n=m.N.length;
 		FF w=new FF(n);
-		FF ND=p.invmod2m();
+		FF p=new FF(n); p.copy(m.N);
+		FF ND=new FF(n); ND.copy(m.ND);
 
 		w.copy(this);
-		one();
-		nres(p);
-		w.nres(p);
+		copy(m.ONE);
+		w.modmul(m.R2,p,ND);
 		for (i=8*CONFIG_BIG.MODBYTES*n-1;i>=0;i--)
 		{
 			modsqr(p,ND);
@@ -908,19 +1108,25 @@ public final class FF {
 	/* double exponentiation r=x^e.y^f mod p */
 	public void pow2(BIG e,FF y,BIG f,FF p)
 	{
-		int i,eb,fb,n=p.length;
+		pow2(e,y,f,new FFMontContext(p));
+	}
+
+	/* as above, with the Montgomery constants for the modulus precomputed */
+	public void pow2(BIG e,FF y,BIG f,FFMontContext m)
+	{
+		int i,eb,fb,n=m.N.length;
 		FF xn=new FF(n);
 		FF yn=new FF(n);
 		FF xy=new FF(n);
-		FF ND=p.invmod2m();
+		FF p=new FF(n); p.copy(m.N);
+		FF ND=new FF(n); ND.copy(m.ND);
 
 		xn.copy(this);
 		yn.copy(y);
-		xn.nres(p);
-		yn.nres(p);
+		xn.modmul(m.R2,p,ND);
+		yn.modmul(m.R2,p,ND);
 		xy.copy(xn); xy.modmul(yn,p,ND);
-		one();
-		nres(p);
+		copy(m.ONE);
 
 		for (i=8*CONFIG_BIG.MODBYTES-1;i>=0;i--)
 		{
@@ -976,8 +1182,44 @@ public final class FF {
 		return false;
 	}
 
+	/* (r.2^s) mod m, for r<m<2^31 */
+	private static long shlmod(long r,int s,long m)
+	{
+		while (s>28)
+		{
+			r=(r<<28)%m;
+			s-=28;
+		}
+		return (r<<s)%m;
+	}
+
+	/* this mod m, for 0<m<2^31. this must be normalised */
+	public int imod(int m)
+	{
+		int i,j;
+		long r=0,b;
+		for (i=length-1;i>=0;i--)
+		{
+			b=0;
+			for (j=BIG.NLEN-1;j>=0;j--)
+				b=(shlmod(b,CONFIG_BIG.BASEBITS,m)+v[i].get(j)%m)%m;
+			r=(shlmod(r,BIG.BIGBITS,m)+b)%m;
+		}
+		return (int)r;
+	}
+
 	/* Miller-Rabin test for primality. Slow. */
 	public static boolean prime(FF p,RAND rng)
+	{
+		int sf=4849845; /* 3*5*.. *19 */
+		p.norm();
+
+		if (p.cfactor(sf)) return false;
+		return prime(p,rng,10);
+	}
+
+	/* Miller-Rabin test with the given number of rounds, and no trial division - for candidates already sieved */
+	public static boolean prime(FF p,RAND rng,int rounds)
 	{
 		int i,j,s=0,n=p.length;
 		boolean loop;
@@ -985,11 +1227,9 @@ public final class FF {
 		FF x=new FF(n);
 		FF unity=new FF(n);
 		FF nm1=new FF(n);
+		FFMontContext m;
 
-		int sf=4849845; /* 3*5*.. *19 */
 		p.norm();
-
-		if (p.cfactor(sf)) return false;
 		unity.one();
 		nm1.copy(p);
 		nm1.sub(unity);
@@ -1002,16 +1242,17 @@ public final class FF {
 			s++;
 		}
 		if (s==0) return false;
-		for (i=0;i<10;i++)
+		m=new FFMontContext(p);
+		for (i=0;i<rounds;i++)
 		{
 			x.randomnum(p,rng);
-			x.pow(d,p);
+			x.pow(d,m);
 
 			if (comp(x,unity)==0 || comp(x,nm1)==0) continue;
 			loop=false;
 			for (j=1;j<s;j++)
 			{
-				x.power(2,p);
+				x.power(2,m);
 				if (comp(x,unity)==0) return false;
 				if (comp(x,nm1)==0) {loop=true; break;}
 			}
@@ -0,0 +1,70 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+/* Montgomery arithmetic constants for a fixed odd modulus N, computed once and reused by every exponentiation */
+/* Nothing changes after construction, so one context can be shared between threads, for example by storing it with a key. The key */
+/* owns it - RSA.PRIVATE_KEY_KILL wipes the contexts of a private key, which by then must no longer be in use by any thread */
+
+package org.miracl.core.XXX;
+
+public final class FFMontContext {
+    final FF N;   /* modulus */
+    final FF ND;  /* Montgomery constant 1/N mod R, where R=2^(n.BIGBITS) */
+    final FF R2;  /* R^2 mod N, to convert to Montgomery form */
+    final FF ONE; /* R mod N, 1 in Montgomery form */
+
+    public FFMontContext(FF p) {
+        int n = p.getlen();
+        N = new FF(n);
+        N.copy(p);
+        N.norm();
+        ND = N.invmod2m();
+        ONE = new FF(n);
+        ONE.one();
+        ONE.nres(N);
+        R2 = new FF(n);
+        R2.copy(ONE);
+        R2.nres(N);
+    }
+
+    public int getlen() {
+        return N.getlen();
+    }
+
+    /* clear out, when the modulus is secret. Only for RSA.PRIVATE_KEY_KILL, once the owning key is finished with */
+    void zero() {
+        N.zero();
+        ND.zero();
+        R2.zero();
+        ONE.zero();
+    }
+}
@@ -222,8 +222,6 @@ public final class FP12 {
 	public void usqr()
 	{
 		FP4 A=new FP4(a);
-		FP4 B=new FP4(c);
-		FP4 C=new FP4(b);
 		FP4 D=new FP4();
 
 		a.sqr();
@@ -235,6 +233,17 @@ public final class FP12 {
 
 		A.add(A);
 		a.add(A);
+		a.reduce();
+		csqr();
+	}
+
+/* Karabina compressed squaring of a unitary element. Only b and c are updated, a is left stale until decompress() */
+	private void csqr()
+	{
+		FP4 B=new FP4(c);
+		FP4 C=new FP4(b);
+		FP4 D=new FP4();
+
 		B.sqr();
 		B.times_i();
 
@@ -255,7 +264,56 @@ public final class FP12 {
 		b.add(B);
 		c.add(C);
 		type=DENSE;
-		reduce();
+		b.reduce();
+		c.reduce();
+	}
+
+/* Recover a for compressed unitary elements x[i], sharing a single inversion. Returns false if some x[i] can't be recovered this way */
+	private static boolean decompress(FP12[] x)
+	{
+		int i,n=x.length;
+		FP2[] N=new FP2[n];
+		FP2[] D=new FP2[n];
+		FP2 t=new FP2();
+		FP2 g2,g3,g4,g5;
+
+		for (i=0;i<n;i++)
+		{
+			g2=x[i].b.geta(); g3=x[i].b.getb();
+			g4=x[i].c.geta(); g5=x[i].c.getb();
+			if (g2.iszilch()) return false;
+
+			D[i]=new FP2(g2); D[i].imul(4); D[i].norm();
+
+			N[i]=new FP2(g5); N[i].sqr();
+			N[i].mul_ip();
+			t.copy(g4); t.sqr(); t.imul(3);
+			N[i].add(t);
+			t.copy(g3); t.add(t);
+			N[i].sub(t);
+			N[i].norm();
+		}
+		FP2.batchInverse(D);
+		for (i=0;i<n;i++)
+		{
+			g2=x[i].b.geta(); g3=x[i].b.getb();
+			g4=x[i].c.geta(); g5=x[i].c.getb();
+
+			N[i].mul(D[i]); // g1=(i.g5^2+3g4^2-2g3)/4g2
+			D[i].copy(N[i]); D[i].sqr(); D[i].add(D[i]);
+			t.copy(g2); t.mul(g5);
+			D[i].add(t);
+			t.copy(g3); t.mul(g4); t.imul(3);
+			D[i].sub(t);
+			D[i].norm();
+			D[i].mul_ip();
+			t.one();
+			D[i].add(t); // g0=(2g1^2+g2g5-3g3g4).i+1
+			D[i].norm();
+			x[i].a.copy(new FP4(D[i],N[i]));
+			x[i].a.reduce();
+		}
+		return true;
 	}
 
 /* Chung-Hasan SQR2 method from http://cacr.uwaterloo.ca/techreports/2006/cacr2006-24.pdf */
@@ -891,6 +949,70 @@ public final class FP12 {
 		for (int i=0;i<CONFIG_BIG.MODBYTES;i++) w[i+11*CONFIG_BIG.MODBYTES]=t[i];
 	}
 
+/* T2 torus compression of unitary this=X+Y.w, where X and Y are fixed by conj(), to m=(1+X)/Y in the half size subfield. Unity maps to m=0 */
+	private FP12 torus()
+	{
+		FP2 z=new FP2();
+		FP2 t=new FP2(a.geta());
+		FP2 one=new FP2(1);
+		t.add(one); t.norm();
+
+		FP12 N=new FP12(new FP4(t),new FP4(z,b.getb()),new FP4(c.geta())); // 1+X
+		FP12 D=new FP12(new FP4(z,a.getb()),new FP4(b.geta()),new FP4(z,c.getb())); // Y.w
+		if (D.iszilch()) return new FP12(0);
+
+		D.inverse();
+		N.mul(new FP12(new FP4(),new FP4(1),new FP4()));
+		N.mul(D);
+		N.reduce();
+		return N;
+	}
+
+/* convert this to byte array. If compress is set this must be unitary, and only its T2 torus representation of 6*MODBYTES bytes is written */
+	public void toBytes(byte[] w,boolean compress)
+	{
+		if (!compress)
+		{
+			toBytes(w);
+			return;
+		}
+		FP12 m=torus();
+		byte[] t=new byte[2*CONFIG_BIG.MODBYTES];
+		m.a.geta().toBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) w[i]=t[i];
+		m.b.getb().toBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) w[i+2*CONFIG_BIG.MODBYTES]=t[i];
+		m.c.geta().toBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) w[i+4*CONFIG_BIG.MODBYTES]=t[i];
+	}
+
+/* convert from byte array to FP12, decompressing if compress is set: this=(m+w)/(m-w) */
+/* Every m decodes to a unitary element, but not necessarily to one in GT - so untrusted input must be checked with PAIR.GTmember */
+	public static FP12 fromBytes(byte[] w,boolean compress)
+	{
+		if (!compress)
+			return fromBytes(w);
+
+		byte[] t=new byte[2*CONFIG_BIG.MODBYTES];
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) t[i]=w[i];
+		FP2 m0=FP2.fromBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) t[i]=w[i+2*CONFIG_BIG.MODBYTES];
+		FP2 m2=FP2.fromBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) t[i]=w[i+4*CONFIG_BIG.MODBYTES];
+		FP2 m1=FP2.fromBytes(t);
+		if (m0.iszilch() && m1.iszilch() && m2.iszilch())
+			return new FP12(1);
+
+		FP2 one=new FP2(1);
+		FP12 N=new FP12(new FP4(m0),new FP4(one,m2),new FP4(m1));
+		one.neg(); one.norm();
+		FP12 D=new FP12(new FP4(m0),new FP4(one,m2),new FP4(m1));
+		D.inverse();
+		N.mul(D);
+		N.reduce();
+		return N;
+	}
+
 /* convert to hex string */
 	public String toString() 
 	{
@@ -912,7 +1034,37 @@ public final class FP12 {
 		FP12 w=new FP12(sf);
 
 		int nb=e3.nbits();
-		for (int i=nb-2;i>=1;i--)
+		int i,j,k=1;
+		for (i=nb-2;i>=1;i--)
+			if (e3.bit(i)!=e1.bit(i)) k++;
+
+		if (4*k<nb)
+		{ // sparse exponent (e.g. CURVE_Bnx) - run of compressed squarings, then decompress the k powers needed all at once
+			FP12[] T=new FP12[k];
+			for (i=1,j=0;i<nb-1;i++)
+			{
+				int bt=e3.bit(i)-e1.bit(i);
+				if (bt!=0)
+				{
+					T[j]=new FP12(w);
+					if (bt==-1) T[j].conj();
+					j++;
+				}
+				w.csqr();
+			}
+			T[j]=w;
+			if (decompress(T))
+			{
+				w=T[0];
+				for (i=1;i<k;i++)
+					w.mul(T[i]);
+				w.reduce();
+				return w;
+			}
+			w=new FP12(sf);
+		}
+
+		for (i=nb-2;i>=1;i--)
 		{
 			w.usqr();
 			int bt=e3.bit(i)-e1.bit(i);
@@ -947,8 +1099,8 @@ public final class FP12 {
 	{
 		FP12 g1=new FP12();
 		FP12 g2=new FP12();
-		FP2 f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
-		BIG q=new BIG(ROM.Modulus);
+		FP2 f=PAIR_CONST.FROB;
+		BIG q=CURVE_CONST.Modulus;
 
 		BIG m=new BIG(q);
 		m.mod(r);
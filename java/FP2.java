@@ -267,7 +267,7 @@ public final class FP2 {
 		BIG C=new BIG(a.x);
 		BIG D=new BIG(y.a.x);
 
-		pR.ucopy(new BIG(ROM.Modulus));
+		pR.ucopy(CURVE_CONST.Modulus);
 
 		DBIG A=BIG.mul(a.x,y.a.x);
 		DBIG B=BIG.mul(b.x,y.b.x);
@@ -339,6 +339,27 @@ public final class FP2 {
 	
 	}
 
+/* convert this to byte array */
+	public void toBytes(byte[] w)
+	{
+		byte[] t=new byte[CONFIG_BIG.MODBYTES];
+		getA().toBytes(t);
+		for (int i=0;i<CONFIG_BIG.MODBYTES;i++) w[i]=t[i];
+		getB().toBytes(t);
+		for (int i=0;i<CONFIG_BIG.MODBYTES;i++) w[i+CONFIG_BIG.MODBYTES]=t[i];
+	}
+
+/* convert from byte array to FP2 */
+	public static FP2 fromBytes(byte[] w)
+	{
+		byte[] t=new byte[CONFIG_BIG.MODBYTES];
+		for (int i=0;i<CONFIG_BIG.MODBYTES;i++) t[i]=w[i];
+		BIG ra=BIG.fromBytes(t);
+		for (int i=0;i<CONFIG_BIG.MODBYTES;i++) t[i]=w[i+CONFIG_BIG.MODBYTES];
+		BIG rb=BIG.fromBytes(t);
+		return new FP2(ra,rb);
+	}
+
 /* output to hex string */
 	public String toString() 
 	{
@@ -367,6 +388,28 @@ public final class FP2 {
 		b.mul(w1);
 	}
 
+/* x[i]=1/x[i] for every i, sharing a single FP inversion. Zero elements are left as zero */
+	public static void batchInverse(FP2[] x)
+	{
+		int i,n=x.length;
+		FP[] w=new FP[n];
+		FP t=new FP();
+		for (i=0;i<n;i++)
+		{
+			x[i].norm();
+			w[i]=new FP(x[i].a); w[i].sqr();
+			t.copy(x[i].b); t.sqr();
+			w[i].add(t);
+		}
+		FP.batchInverse(w);
+		for (i=0;i<n;i++)
+		{
+			x[i].a.mul(w[i]);
+			w[i].neg(); w[i].norm();
+			x[i].b.mul(w[i]);
+		}
+	}
+
 /* this/=2 */
 	public void div2()
 	{
@@ -47,6 +47,7 @@ public final class FP {
 
     /**************** 32-bit specific ************************/
 
+    private static final BIG MODULUS = new BIG(ROM.Modulus);
 
     /* reduce a DBIG to a BIG using the appropriate form of the modulus */
     public static BIG mod(DBIG d) {
@@ -110,7 +111,7 @@ public final class FP {
             return b;
         }
         if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
-            return BIG.monty(new BIG(ROM.Modulus), ROM.MConst, d);
+            return BIG.monty(MODULUS, ROM.MConst, d);
         }
 
         return new BIG(0);
@@ -377,7 +378,7 @@ public final class FP {
 
     /* this/=2 mod Modulus */
     public void div2() {
-        BIG m=new BIG(ROM.Modulus);
+        BIG m=MODULUS;
         int pr=x.parity();
         BIG w = new BIG(x);
         x.fshr(1);
@@ -399,7 +400,7 @@ public final class FP {
     /* return jacobi symbol (this/Modulus) */
     public int jacobi() {
         BIG w = redc();
-        return w.jacobi(new BIG(ROM.Modulus));
+        return w.jacobi(MODULUS);
     }
 
     private FP pow(BIG e) {
@@ -562,6 +563,34 @@ public final class FP {
         reduce();
     } 
 
+    /* x[i]=1/x[i] for every i, using Montgomery's trick and a single inversion. Zero elements are left as zero */
+    public static void batchInverse(FP[] x) {
+        int i,n=x.length;
+        if (n==0) return;
+        FP one=new FP(1);
+        FP acc=new FP(1);
+        FP t=new FP();
+        FP[] c=new FP[n];
+        int[] z=new int[n];
+        for (i=0;i<n;i++)
+        {
+            c[i]=new FP(acc);
+            z[i]=x[i].iszilch() ? 1 : 0;
+            t.copy(x[i]);
+            t.cmove(one,z[i]);
+            acc.mul(t);
+        }
+        acc.inverse();
+        for (i=n-1;i>=0;i--)
+        {
+            t.copy(x[i]);
+            t.cmove(one,z[i]);
+            c[i].mul(acc); c[i].reduce();
+            acc.mul(t);
+            x[i].cmove(c[i],1-z[i]);
+        }
+    }
+
     /* test for Quadratic residue */
     public int qr(FP h) {
         FP r=new FP(this);
@@ -281,6 +281,27 @@ public final class FP4 {
 
 		norm();
 	}
+/* convert this to byte array - e.g. an XTR trace from FP12.trace() or compow() */
+	public void toBytes(byte[] w)
+	{
+		byte[] t=new byte[2*CONFIG_BIG.MODBYTES];
+		a.toBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) w[i]=t[i];
+		b.toBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) w[i+2*CONFIG_BIG.MODBYTES]=t[i];
+	}
+
+/* convert from byte array to FP4 */
+	public static FP4 fromBytes(byte[] w)
+	{
+		byte[] t=new byte[2*CONFIG_BIG.MODBYTES];
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) t[i]=w[i];
+		FP2 ta=FP2.fromBytes(t);
+		for (int i=0;i<2*CONFIG_BIG.MODBYTES;i++) t[i]=w[i+2*CONFIG_BIG.MODBYTES];
+		FP2 tb=FP2.fromBytes(t);
+		return new FP4(ta,tb);
+	}
+
 /* convert this to hex string */
 	public String toString() 
 	{
@@ -311,6 +332,29 @@ public final class FP4 {
 		b.mul(t1);
 	}
 
+/* x[i]=1/x[i] for every i, sharing a single FP inversion. Zero elements are left as zero */
+	public static void batchInverse(FP4[] x)
+	{
+		int i,n=x.length;
+		FP2[] w=new FP2[n];
+		FP2 t=new FP2();
+		for (i=0;i<n;i++)
+		{
+			w[i]=new FP2(x[i].a); w[i].sqr();
+			t.copy(x[i].b); t.sqr();
+			t.mul_ip();
+			t.norm();
+			w[i].sub(t);
+		}
+		FP2.batchInverse(w);
+		for (i=0;i<n;i++)
+		{
+			x[i].a.mul(w[i]);
+			w[i].neg(); w[i].norm();
+			x[i].b.mul(w[i]);
+		}
+	}
+
 
 /* this*=i where i = sqrt(-1+sqrt(-1)) */
 	public void times_i()
@@ -200,8 +200,6 @@ public final class FP48 {
     /* Granger-Scott Unitary Squaring */
     public void usqr() {
         FP16 A = new FP16(a);
-        FP16 B = new FP16(c);
-        FP16 C = new FP16(b);
         FP16 D = new FP16();
 
         a.sqr();
@@ -213,6 +211,16 @@ public final class FP48 {
 
         A.add(A);
         a.add(A);
+        a.reduce();
+        csqr();
+    }
+
+    /* Karabina compressed squaring of a unitary element. Only b and c are updated, a is left stale until decompress() */
+    private void csqr() {
+        FP16 B = new FP16(c);
+        FP16 C = new FP16(b);
+        FP16 D = new FP16();
+
         B.sqr();
         B.times_i();
 
@@ -233,7 +241,53 @@ public final class FP48 {
         b.add(B);
         c.add(C);
         type = DENSE;
-        reduce();
+        b.reduce();
+        c.reduce();
+    }
+
+    /* Recover a for compressed unitary elements x[i], sharing a single inversion. Returns false if some x[i] can't be recovered this way */
+    private static boolean decompress(FP48[] x) {
+        int i, n = x.length;
+        FP8[] N = new FP8[n];
+        FP8[] D = new FP8[n];
+        FP8 t = new FP8();
+        FP8 g2, g3, g4, g5;
+
+        for (i = 0; i < n; i++) {
+            g2 = x[i].b.geta(); g3 = x[i].b.getb();
+            g4 = x[i].c.geta(); g5 = x[i].c.getb();
+            if (g2.iszilch()) return false;
+
+            D[i] = new FP8(g2); D[i].imul(4); D[i].norm();
+
+            N[i] = new FP8(g5); N[i].sqr();
+            N[i].times_i();
+            t.copy(g4); t.sqr(); t.imul(3);
+            N[i].add(t);
+            t.copy(g3); t.add(t);
+            N[i].sub(t);
+            N[i].norm();
+        }
+        FP8.batchInverse(D);
+        for (i = 0; i < n; i++) {
+            g2 = x[i].b.geta(); g3 = x[i].b.getb();
+            g4 = x[i].c.geta(); g5 = x[i].c.getb();
+
+            N[i].mul(D[i]); // g1=(i.g5^2+3g4^2-2g3)/4g2
+            D[i].copy(N[i]); D[i].sqr(); D[i].add(D[i]);
+            t.copy(g2); t.mul(g5);
+            D[i].add(t);
+            t.copy(g3); t.mul(g4); t.imul(3);
+            D[i].sub(t);
+            D[i].norm();
+            D[i].times_i();
+            t.one();
+            D[i].add(t); // g0=(2g1^2+g2g5-3g3g4).i+1
+            D[i].norm();
+            x[i].a.copy(new FP16(D[i], N[i]));
+            x[i].a.reduce();
+        }
+        return true;
     }
 
     /* Chung-Hasan SQR2 method from http://cacr.uwaterloo.ca/techreports/2006/cacr2006-24.pdf */
@@ -1069,6 +1123,66 @@ public final class FP48 {
         for (int i = 0; i < CONFIG_BIG.MODBYTES; i++) w[i + 47 * CONFIG_BIG.MODBYTES] = t[i];
     }
 
+    /* T2 torus compression of unitary this=X+Y.w, where X and Y are fixed by conj(), to m=(1+X)/Y in the half size subfield. Unity maps to m=0 */
+    private FP48 torus() {
+        FP8 z = new FP8();
+        FP8 t = new FP8(a.geta());
+        FP8 one = new FP8(1);
+        t.add(one); t.norm();
+
+        FP48 N = new FP48(new FP16(t), new FP16(z, b.getb()), new FP16(c.geta())); // 1+X
+        FP48 D = new FP48(new FP16(z, a.getb()), new FP16(b.geta()), new FP16(z, c.getb())); // Y.w
+        if (D.iszilch()) return new FP48(0);
+
+        D.inverse();
+        N.mul(new FP48(new FP16(), new FP16(1), new FP16()));
+        N.mul(D);
+        N.reduce();
+        return N;
+    }
+
+    /* convert this to byte array. If compress is set this must be unitary, and only its T2 torus representation of 24*MODBYTES bytes is written */
+    public void toBytes(byte[] w, boolean compress) {
+        if (!compress) {
+            toBytes(w);
+            return;
+        }
+        FP48 m = torus();
+        byte[] t = new byte[8 * CONFIG_BIG.MODBYTES];
+        m.a.geta().toBytes(t);
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) w[i] = t[i];
+        m.b.getb().toBytes(t);
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) w[i + 8 * CONFIG_BIG.MODBYTES] = t[i];
+        m.c.geta().toBytes(t);
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) w[i + 16 * CONFIG_BIG.MODBYTES] = t[i];
+    }
+
+    /* convert from byte array to FP48, decompressing if compress is set: this=(m+w)/(m-w) */
+    /* Every m decodes to a unitary element, but not necessarily to one in GT - so untrusted input must be checked with PAIR256.GTmember */
+    public static FP48 fromBytes(byte[] w, boolean compress) {
+        if (!compress)
+            return fromBytes(w);
+
+        byte[] t = new byte[8 * CONFIG_BIG.MODBYTES];
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) t[i] = w[i];
+        FP8 m0 = FP8.fromBytes(t);
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) t[i] = w[i + 8 * CONFIG_BIG.MODBYTES];
+        FP8 m2 = FP8.fromBytes(t);
+        for (int i = 0; i < 8 * CONFIG_BIG.MODBYTES; i++) t[i] = w[i + 16 * CONFIG_BIG.MODBYTES];
+        FP8 m1 = FP8.fromBytes(t);
+        if (m0.iszilch() && m1.iszilch() && m2.iszilch())
+            return new FP48(1);
+
+        FP8 one = new FP8(1);
+        FP48 N = new FP48(new FP16(m0), new FP16(one, m2), new FP16(m1));
+        one.neg(); one.norm();
+        FP48 D = new FP48(new FP16(m0), new FP16(one, m2), new FP16(m1));
+        D.inverse();
+        N.mul(D);
+        N.reduce();
+        return N;
+    }
+
     /* convert to hex string */
     public String toString() {
         return ("[" + a.toString() + "," + b.toString() + "," + c.toString() + "]");
@@ -1089,7 +1203,34 @@ public final class FP48 {
         FP48 w = new FP48(sf);
 
         int nb = e3.nbits();
-        for (int i = nb - 2; i >= 1; i--) {
+        int i, j, k = 1;
+        for (i = nb - 2; i >= 1; i--)
+            if (e3.bit(i) != e1.bit(i)) k++;
+
+        if (4 * k < nb) {
+            // sparse exponent (e.g. CURVE_Bnx) - run of compressed squarings, then decompress the k powers needed all at once
+            FP48[] T = new FP48[k];
+            for (i = 1, j = 0; i < nb - 1; i++) {
+                int bt = e3.bit(i) - e1.bit(i);
+                if (bt != 0) {
+                    T[j] = new FP48(w);
+                    if (bt == -1) T[j].conj();
+                    j++;
+                }
+                w.csqr();
+            }
+            T[j] = w;
+            if (decompress(T)) {
+                w = T[0];
+                for (i = 1; i < k; i++)
+                    w.mul(T[i]);
+                w.reduce();
+                return w;
+            }
+            w = new FP48(sf);
+        }
+
+        for (i = nb - 2; i >= 1; i--) {
             w.usqr();
             int bt = e3.bit(i) - e1.bit(i);
             if (bt == 1)
@@ -1120,8 +1261,8 @@ public final class FP48 {
     public FP16 compow(BIG e, BIG r) {
         FP48 g1 = new FP48();
         FP48 g2 = new FP48();
-        FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-        BIG q = new BIG(ROM.Modulus);
+        FP2 f = PAIR_CONST.FROB;
+        BIG q = CURVE_CONST.Modulus;
 
         BIG m = new BIG(q);
         m.mod(r);
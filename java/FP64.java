@@ -45,6 +45,20 @@ public final class FP {
 
     /**************** 64-bit specific ************************/
 
+    private static final BIG MODULUS = new BIG(ROM.Modulus);
+
+    /* scratch for BIG.mulmonty() and BIG.sqrmonty(), one per thread. They leave it zeroed, so no field element lingers in it */
+    private static final ThreadLocal<long[]> MWORK = new ThreadLocal<long[]>();
+
+    private static long[] mwork() {
+        long[] t = MWORK.get();
+        if (t == null) {
+            t = new long[BIG.NLEN];
+            MWORK.set(t);
+        }
+        return t;
+    }
+
     /* reduce a DBIG to a BIG using the appropriate form of the modulus */
     public static BIG mod(DBIG d) {
         if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.PSEUDO_MERSENNE) {
@@ -67,12 +81,9 @@ public final class FP {
         }
         if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.MONTGOMERY_FRIENDLY) {
             BIG b;
-            long[] cr = new long[2];
-            for (int i = 0; i < BIG.NLEN; i++) {
-                cr = BIG.muladd(d.w[i], ROM.MConst - 1, d.w[i], d.w[BIG.NLEN + i - 1]);
-                d.w[BIG.NLEN + i] += cr[0];
-                d.w[BIG.NLEN + i - 1] = cr[1];
-            }
+            long x0 = (ROM.MConst - 1) & BIG.HMASK, x1 = ((ROM.MConst - 1) >> BIG.HBITS);
+            for (int i = 0; i < BIG.NLEN; i++)
+                d.w[BIG.NLEN + i] += BIG.mac(x0, x1, d.w[i], d.w[i], d.w, BIG.NLEN + i - 1);
 
             b = new BIG(0);
             for (int i = 0; i < BIG.NLEN; i++ )
@@ -106,7 +117,7 @@ public final class FP {
             return b;
         }
         if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
-            return BIG.monty(new BIG(ROM.Modulus), ROM.MConst, d);
+            return BIG.monty(MODULUS, ROM.MConst, d);
         }
 
         return new BIG(0);
@@ -199,7 +210,10 @@ public final class FP {
 
     /* convert to Montgomery n-residue form */
     public void nres() {
-        if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE) {
+        if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
+            BIG.mulmonty(x, x, new BIG(ROM.R2modp), MODULUS, ROM.MConst, mwork());
+            XES = 2;
+        } else if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE) {
             DBIG d = BIG.mul(x, new BIG(ROM.R2modp)); /*** Change ***/
             x.copy(mod(d));
             XES = 2;
@@ -283,8 +297,12 @@ public final class FP {
     public void mul(FP b) {
         if ((long)XES * b.XES > (long)CONFIG_FIELD.FEXCESS) reduce();
 
-        DBIG d = BIG.mul(x, b.x);
-        x.copy(mod(d));
+        if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
+            BIG.mulmonty(x, x, b.x, MODULUS, ROM.MConst, mwork());
+        } else {
+            DBIG d = BIG.mul(x, b.x);
+            x.copy(mod(d));
+        }
         XES = 2;
     }
 
@@ -320,8 +338,12 @@ public final class FP {
         DBIG d;
         if ((long)XES * XES > (long)CONFIG_FIELD.FEXCESS) reduce();
 
-        d = BIG.sqr(x);
-        x.copy(mod(d));
+        if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
+            BIG.sqrmonty(x, x, MODULUS, ROM.MConst, mwork());
+        } else {
+            d = BIG.sqr(x);
+            x.copy(mod(d));
+        }
         XES = 2;
     }
 
@@ -378,7 +400,7 @@ public final class FP {
 
     /* this/=2 mod Modulus */
     public void div2() {
-        BIG m=new BIG(ROM.Modulus);
+        BIG m=MODULUS;
         int pr=x.parity();
         BIG w = new BIG(x);
         x.fshr(1);
@@ -391,7 +413,7 @@ public final class FP {
     /* return jacobi symbol (this/Modulus) */
     public int jacobi() {
         BIG w = redc();
-        return w.jacobi(new BIG(ROM.Modulus));
+        return w.jacobi(MODULUS);
     }
 
     /* return TRUE if this==a */
@@ -563,6 +585,34 @@ public final class FP {
         reduce();
     } 
 
+    /* x[i]=1/x[i] for every i, using Montgomery's trick and a single inversion. Zero elements are left as zero */
+    public static void batchInverse(FP[] x) {
+        int i,n=x.length;
+        if (n==0) return;
+        FP one=new FP(1);
+        FP acc=new FP(1);
+        FP t=new FP();
+        FP[] c=new FP[n];
+        int[] z=new int[n];
+        for (i=0;i<n;i++)
+        {
+            c[i]=new FP(acc);
+            z[i]=x[i].iszilch() ? 1 : 0;
+            t.copy(x[i]);
+            t.cmove(one,z[i]);
+            acc.mul(t);
+        }
+        acc.inverse();
+        for (i=n-1;i>=0;i--)
+        {
+            t.copy(x[i]);
+            t.cmove(one,z[i]);
+            c[i].mul(acc); c[i].reduce();
+            acc.mul(t);
+            x[i].cmove(c[i],1-z[i]);
+        }
+    }
+
     /* test for quadratic residue */
     public int qr(FP h) {
         FP r=new FP(this);
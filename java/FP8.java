@@ -295,6 +295,27 @@ public final class FP8 {
 		norm();
 	}
 
+/* convert this to byte array - e.g. an XTR trace from FP24.trace() or compow() */
+	public void toBytes(byte[] w)
+	{
+		byte[] t=new byte[4*CONFIG_BIG.MODBYTES];
+		a.toBytes(t);
+		for (int i=0;i<4*CONFIG_BIG.MODBYTES;i++) w[i]=t[i];
+		b.toBytes(t);
+		for (int i=0;i<4*CONFIG_BIG.MODBYTES;i++) w[i+4*CONFIG_BIG.MODBYTES]=t[i];
+	}
+
+/* convert from byte array to FP8 */
+	public static FP8 fromBytes(byte[] w)
+	{
+		byte[] t=new byte[4*CONFIG_BIG.MODBYTES];
+		for (int i=0;i<4*CONFIG_BIG.MODBYTES;i++) t[i]=w[i];
+		FP4 ta=FP4.fromBytes(t);
+		for (int i=0;i<4*CONFIG_BIG.MODBYTES;i++) t[i]=w[i+4*CONFIG_BIG.MODBYTES];
+		FP4 tb=FP4.fromBytes(t);
+		return new FP8(ta,tb);
+	}
+
 /* convert this to hex string */
 	public String toString()
 	{
@@ -321,6 +342,29 @@ public final class FP8 {
 		b.mul(t1);
 	}
 
+/* x[i]=1/x[i] for every i, sharing a single FP inversion. Zero elements are left as zero */
+	public static void batchInverse(FP8[] x)
+	{
+		int i,n=x.length;
+		FP4[] w=new FP4[n];
+		FP4 t=new FP4();
+		for (i=0;i<n;i++)
+		{
+			w[i]=new FP4(x[i].a); w[i].sqr();
+			t.copy(x[i].b); t.sqr();
+			t.times_i();
+			t.norm();
+			w[i].sub(t); w[i].norm();
+		}
+		FP4.batchInverse(w);
+		for (i=0;i<n;i++)
+		{
+			x[i].a.mul(w[i]);
+			w[i].neg(); w[i].norm();
+			x[i].b.mul(w[i]);
+		}
+	}
+
 /* this*=i where i = sqrt(-1+sqrt(-1)) */
 	public void times_i()
 	{
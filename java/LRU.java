@@ -0,0 +1,106 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+/* Thread-safe, size-bounded cache of precomputed values, keyed by byte arrays (typically a serialised point) */
+/* Least recently used entries are evicted first. A key is only admitted once it has been offered twice, */
+/* so a stream of one-off keys cannot flush out the values that are used over and over */
+
+package org.miracl.core;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class LRU<T> {
+    private int capacity;
+    private final LinkedHashMap<ByteBuffer, T> map;
+    private final LinkedHashMap<ByteBuffer, Boolean> seen;
+
+    public LRU(int capacity) {
+        this.capacity = capacity;
+        map = new LinkedHashMap<ByteBuffer, T>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, T> eldest) {
+                return size() > LRU.this.capacity;
+            }
+        };
+        seen = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > LRU.this.capacity;
+            }
+        };
+    }
+
+    private static ByteBuffer key(byte[] k) {
+        byte[] c = new byte[k.length];
+        System.arraycopy(k, 0, c, 0, k.length);
+        return ByteBuffer.wrap(c);
+    }
+
+    /* return cached value, or null if not present */
+    public synchronized T get(byte[] k) {
+        return map.get(ByteBuffer.wrap(k));
+    }
+
+    /* returns true if a value for this key is worth building and storing - ie the key has been offered before */
+    public synchronized boolean admit(byte[] k) {
+        if (capacity <= 0) return false;
+        ByteBuffer b = ByteBuffer.wrap(k);
+        if (seen.remove(b) != null) return true;
+        seen.put(key(k), Boolean.TRUE);
+        return false;
+    }
+
+    public synchronized void put(byte[] k, T v) {
+        if (capacity <= 0) return;
+        map.put(key(k), v);
+    }
+
+    /* change maximum number of entries, evicting if necessary */
+    public synchronized void setCapacity(int n) {
+        capacity = n;
+        trim(map); trim(seen);
+    }
+
+    private void trim(LinkedHashMap<ByteBuffer, ?> m) {
+        while (m.size() > capacity && !m.isEmpty())
+            m.remove(m.keySet().iterator().next());
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        seen.clear();
+    }
+}
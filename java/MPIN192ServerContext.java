@@ -0,0 +1,97 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+
+/* An MPIN server secret sQ, decoded once, together with precomputed line function tables for Q and sQ */
+/* Use it in place of the serialised server secret when one server verifies many logins */
+/* Nothing changes after construction, so one context can be shared freely between threads */
+
+package org.miracl.core.XXX;
+
+public final class MPIN192ServerContext {
+    private final ECP4 Q;
+    private final ECP4 sQ;
+    private final FP8[] TQ;
+    private final FP8[] TsQ;
+
+    public MPIN192ServerContext(byte[] SST) {
+        this(ECP4.fromBytes(SST), true);
+    }
+
+    /* without tables each pairing falls back to the G2 cache - for the calls that still take the serialised secret */
+    MPIN192ServerContext(ECP4 sQ, boolean precompute) {
+        Q = ECP4.generator();
+        this.sQ = sQ;
+        if (precompute && !sQ.is_infinity()) {
+            sQ.affine();
+            TQ = PAIR192.precomp(Q);
+            TsQ = PAIR192.precomp(sQ);
+        } else {
+            TQ = null;
+            TsQ = null;
+        }
+    }
+
+    /* false if the server secret did not decode to a point on the curve */
+    public boolean valid() {
+        return !sQ.is_infinity();
+    }
+
+    /* return e(Q,R).e(sQ,P) */
+    FP24 pair2(ECP R, ECP P) {
+        FP24[] r = PAIR192.initmp();
+        if (TQ != null) {
+            PAIR192.another_pc(r, TQ, R);
+            PAIR192.another_pc(r, TsQ, P);
+        } else {
+            PAIR192.another_cached(r, Q, R);
+            PAIR192.another_cached(r, sQ, P);
+        }
+        return PAIR192.fexp(PAIR192.miller(r));
+    }
+
+    /* return e(Q,P) */
+    FP24 pairQ(ECP P) {
+        if (TQ == null) return PAIR192.fexp(PAIR192.ate(Q, P));
+        FP24[] r = PAIR192.initmp();
+        PAIR192.another_pc(r, TQ, P);
+        return PAIR192.fexp(PAIR192.miller(r));
+    }
+
+    /* return e(sQ,R) */
+    FP24 pairsQ(ECP R) {
+        if (TsQ == null) return PAIR192.fexp(PAIR192.ate(sQ, R));
+        FP24[] r = PAIR192.initmp();
+        PAIR192.another_pc(r, TsQ, R);
+        return PAIR192.fexp(PAIR192.miller(r));
+    }
+}
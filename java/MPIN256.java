@@ -34,7 +34,14 @@
 
 package org.miracl.core.XXX;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.miracl.core.RAND;
 import org.miracl.core.HMAC;
@@ -147,7 +154,7 @@ public class MPIN256 {
     public static ECP map(BIG u, int cb) {
         ECP P;
         BIG x = new BIG(u);
-        BIG p = new BIG(ROM.Modulus);
+        BIG p = CURVE_CONST.Modulus;
         x.mod(p);
         while (true) {
             P = new ECP(x, cb);
@@ -190,7 +197,7 @@ public class MPIN256 {
         ECP P = new ECP(u, v);
         if (P.is_infinity()) return INVALID_POINT;
 
-        BIG p = new BIG(ROM.Modulus);
+        BIG p = CURVE_CONST.Modulus;
         u = BIG.randomnum(p, rng);
 
         su = rng.getByte();  su %= 2;
@@ -266,7 +273,7 @@ public class MPIN256 {
     /* create random secret S */
     public static int RANDOM_GENERATE(RAND rng, byte[] S) {
         BIG s;
-        BIG r = new BIG(ROM.CURVE_Order);
+        BIG r = CURVE_CONST.CURVE_Order;
         s = BIG.randtrunc(r, 16 * CONFIG_CURVE.AESKEY, rng);
         s.toBytes(S);
         return 0;
@@ -292,7 +299,7 @@ public class MPIN256 {
 
     /* Implement step 2 on client side of MPin protocol */
     public static int CLIENT_2(byte[] X, byte[] Y, byte[] SEC) {
-        BIG r = new BIG(ROM.CURVE_Order);
+        BIG r = CURVE_CONST.CURVE_Order;
         ECP P = ECP.fromBytes(SEC);
         if (P.is_infinity()) return INVALID_POINT;
 
@@ -309,7 +316,7 @@ public class MPIN256 {
 
     /* Implement step 1 on client side of MPin protocol */
     public static int CLIENT_1(int sha, int date, byte[] CLIENT_ID, RAND rng, byte[] X, int pin, byte[] TOKEN, byte[] SEC, byte[] xID, byte[] xCID, byte[] PERMIT) {
-        BIG r = new BIG(ROM.CURVE_Order);
+        BIG r = CURVE_CONST.CURVE_Order;
         BIG x;
         if (rng != null) {
             x = BIG.randtrunc(r, 16 * CONFIG_CURVE.AESKEY, rng);
@@ -374,7 +381,7 @@ public class MPIN256 {
     */
     public static int GET_G1_MULTIPLE(RAND rng, int type, byte[] X, byte[] G, byte[] W) {
         BIG x;
-        BIG r = new BIG(ROM.CURVE_Order);
+        BIG r = CURVE_CONST.CURVE_Order;
         if (rng != null) {
             x = BIG.randtrunc(r, 16 * CONFIG_CURVE.AESKEY, rng);
             x.toBytes(X);
@@ -426,11 +433,12 @@ public class MPIN256 {
 
     /* Implement step 2 of MPin protocol on server side */
     public static int SERVER_2(int date, byte[] HID, byte[] HTID, byte[] Y, byte[] SST, byte[] xID, byte[] xCID, byte[] mSEC, byte[] E, byte[] F) {
-        BIG q = new BIG(ROM.Modulus);
-        ECP8 Q = ECP8.generator();
+        return SERVER_2(date, HID, HTID, Y, new MPIN256ServerContext(ECP8.fromBytes(SST), false), xID, xCID, mSEC, E, F);
+    }
 
-        ECP8 sQ = ECP8.fromBytes(SST);
-        if (sQ.is_infinity()) return INVALID_POINT;
+    /* As above, but with the server secret already decoded into a context - only G1 work is left per login */
+    public static int SERVER_2(int date, byte[] HID, byte[] HTID, byte[] Y, MPIN256ServerContext SC, byte[] xID, byte[] xCID, byte[] mSEC, byte[] E, byte[] F) {
+        if (!SC.valid()) return INVALID_POINT;
 
         ECP R;
         if (date != 0)
@@ -456,10 +464,7 @@ public class MPIN256 {
         R = ECP.fromBytes(mSEC);
         if (R.is_infinity()) return INVALID_POINT;
 
-        FP48 g;
-
-        g = PAIR256.ate2(Q, R, sQ, P);
-        g = PAIR256.fexp(g);
+        FP48 g = SC.pair2(R, P);
 
         if (!g.isunity()) {
             if (HID != null && xID != null && E != null && F != null) {
@@ -473,8 +478,7 @@ public class MPIN256 {
                     P = PAIR256.G1mul(P, y);
                     P.add(R);
                 }
-                g = PAIR256.ate(Q, P);
-                g = PAIR256.fexp(g);
+                g = SC.pairQ(P);
                 g.toBytes(F);
             }
             return BAD_PIN;
@@ -483,6 +487,80 @@ public class MPIN256 {
         return 0;
     }
 
+/* Logins per random linear combination - a group that fails is checked again one login at a time */
+    public static final int BATCH = 16;
+
+    private static byte[] entry(byte[][] A, int i) {
+        if (A == null) return null;
+        return A[i];
+    }
+
+    /* Step 2 of MPin protocol on server side for many logins at once. Array arguments hold one entry per login, and may be null where SERVER_2 allows null */
+    /* RES[i] is set to what SERVER_2 would return for login i. Returns 0 if all logins succeed, else the first non-zero RES[i] */
+    /* The pairing equations of a group are combined using small random multipliers. As Q and sQ are the same for every login, this leaves */
+    /* two pairings and one final exponentiation per group. A group that fails is checked login by login, so that BAD_PIN, E and F are exact */
+    public static int SERVER_2_BATCH(RAND RNG, int date, byte[][] HID, byte[][] HTID, byte[][] Y, MPIN256ServerContext SC, byte[][] xID, byte[][] xCID, byte[][] mSEC, byte[][] E, byte[][] F, int[] RES) {
+        int i, j, k, m = 0, n = Y.length, res = 0;
+        ECP[] A = new ECP[n];
+        ECP[] U = new ECP[n];
+        ECP[] S = new ECP[n];
+        int[] idx = new int[n];
+
+        for (i = 0; i < n; i++) {
+            RES[i] = 0;
+            byte[] H = (date != 0) ? entry(HTID, i) : entry(HID, i);
+            byte[] X = (date != 0) ? entry(xCID, i) : entry(xID, i);
+            if (SC.valid() && H != null && X != null) {
+                A[i] = ECP.fromBytes(H);
+                U[i] = ECP.fromBytes(X);
+                S[i] = ECP.fromBytes(mSEC[i]);
+                if (!A[i].is_infinity() && !U[i].is_infinity() && !S[i].is_infinity()) {
+                    idx[m++] = i;
+                    continue;
+                }
+            }
+            RES[i] = SERVER_2(date, entry(HID, i), entry(HTID, i), Y[i], SC, entry(xID, i), entry(xCID, i), mSEC[i], entry(E, i), entry(F, i));
+        }
+
+        for (j = 0; j < m; j += k) {
+            k = m - j;
+            if (k > BATCH) k = BATCH;
+            if (!server_group(RNG, idx, j, k, A, U, S, Y, SC)) {
+                for (int t = j; t < j + k; t++) {
+                    i = idx[t];
+                    RES[i] = SERVER_2(date, entry(HID, i), entry(HTID, i), Y[i], SC, entry(xID, i), entry(xCID, i), mSEC[i], entry(E, i), entry(F, i));
+                }
+            }
+        }
+
+        for (i = 0; i < n; i++)
+            if (res == 0) res = RES[i];
+        return res;
+    }
+
+    /* check e(Q,sum z.mSEC).e(sQ,sum z.(y.HID+xID))=1 for random z, over logins idx[j..j+k-1] */
+    private static boolean server_group(RAND RNG, int[] idx, int j, int k, ECP[] A, ECP[] U, ECP[] S, byte[][] Y, MPIN256ServerContext SC) {
+        int i, t;
+        BIG r = CURVE_CONST.CURVE_Order;
+        ECP[] P = new ECP[2 * k];
+        BIG[] e = new BIG[2 * k];
+        ECP[] R = new ECP[k];
+        BIG[] z = new BIG[k];
+
+        for (t = 0; t < k; t++) {
+            i = idx[j + t];
+            z[t] = BIG.randtrunc(r, 64, RNG);
+            if (z[t].iszilch()) z[t].inc(1);
+            P[2 * t] = A[i];
+            e[2 * t] = BIG.modmul(z[t], BIG.fromBytes(Y[i]), r);
+            P[2 * t + 1] = U[i];
+            e[2 * t + 1] = z[t];
+            R[t] = S[i];
+        }
+        return SC.pair2(ECP.muln(R, z), ECP.muln(P, e)).isunity();
+    }
+
+
     /* Pollards kangaroos used to return PIN error */
     public static int KANGAROO(byte[] E, byte[] F) {
         FP48 ge = FP48.fromBytes(E);
@@ -529,6 +607,109 @@ public class MPIN256 {
         return res;
     }
 
+    /* Baby-step giant-step alternative to KANGAROO - returns the same PIN error, or 0 if E and F are not related by one */
+    /* Always succeeds for a PIN error less than MAXPIN. The table holds sqrt(2.MAXPIN) elements, so about 3*sqrt(MAXPIN) */
+    /* multiplications in all. F is different for every login, so the table cannot be kept from one call to the next */
+    public static int PIN_ERROR(byte[] E, byte[] F) {
+        return PIN_ERROR(E, F, null);
+    }
+
+    /* As above. With an executor the giant steps are shared out between its threads, and the calling thread */
+    public static int PIN_ERROR(byte[] E, byte[] F, ExecutorService ex) {
+        return PIN_ERROR(E, F, ex, Runtime.getRuntime().availableProcessors());
+    }
+
+    /* As above, with the giant steps split into w ranges. The calling thread searches the first, the executor the rest */
+    /* Ranges the executor has not started by the time they are needed, or refused, are searched by the calling thread, */
+    /* so ex may be a bounded pool that the caller itself is running on. Once the error is found the rest are cancelled */
+    public static int PIN_ERROR(byte[] E, byte[] F, ExecutorService ex, int w) {
+        FP48 ge = FP48.fromBytes(E);
+        FP48 gf = FP48.fromBytes(F);
+        int i, j, res;
+        final int m = (int)Math.ceil(Math.sqrt(2.0 * MAXPIN));  /* baby steps */
+        final int n = (2 * MAXPIN + m - 1) / m;                 /* giant steps */
+        final int[] H = new int[Integer.highestOneBit(2 * m) << 1];
+        final FP48[] B = new FP48[m];
+
+// Baby steps B[j]=F^-j, hashed into H by open addressing
+        FP48 t = new FP48(1);
+        for (j = 0; j < m; j++) {
+            B[j] = new FP48(t); B[j].conj();
+            i = bsgs_key(B[j]) & (H.length - 1);
+            while (H[i] != 0) i = (i + 1) & (H.length - 1);
+            H[i] = j + 1;
+            t.mul(gf);
+        }
+        final FP48 G = t;                                       /* F^m */
+
+// Giant steps E.F^(-MAXPIN+i.m) for i=0,1,.. until one is in the table. The PIN error is then i.m+j-MAXPIN
+        final FP48 S = new FP48(gf.pow(new BIG(MAXPIN)));
+        S.conj(); S.mul(ge);
+
+        if (ex == null || w < 1) w = 1;
+        if (w > n) w = n;
+        final int c = (n + w - 1) / w;
+        List<FutureTask<Integer>> R = new ArrayList<FutureTask<Integer>>(w);
+        R.add(null);
+        for (i = 1; i < w; i++) {
+            final int lo = i * c;
+            FutureTask<Integer> f = new FutureTask<Integer>(new Callable<Integer>() {
+                public Integer call() {
+                    return bsgs_giant(S, G, B, H, lo, Math.min(lo + c, n), m);
+                }
+            });
+            try {
+                ex.execute(f);
+            } catch (RejectedExecutionException x) {
+                /* searched below instead */
+            }
+            R.add(f);
+        }
+
+        boolean interrupted = false;
+        res = bsgs_giant(S, G, B, H, 0, Math.min(c, n), m);
+        for (i = 1; i < w; i++) {
+            final int lo = i * c;
+            FutureTask<Integer> f = R.get(i);
+            if (res != 0) {
+                f.cancel(true);
+                continue;
+            }
+            f.run();  /* does nothing if the executor has already started it */
+            try {
+                res = f.get();
+            } catch (InterruptedException x) {
+                interrupted = true;
+                f.cancel(true);
+                res = bsgs_giant(S, G, B, H, lo, Math.min(lo + c, n), m);
+            } catch (ExecutionException x) {
+                res = bsgs_giant(S, G, B, H, lo, Math.min(lo + c, n), m);
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return res;
+    }
+
+    private static int bsgs_key(FP48 x) {
+        return x.geta().geta().geta().geta().getA().lastbits(20);
+    }
+
+    /* giant steps lo..hi-1 - returns the PIN error, or 0 if not found. Works on copies, so threads can share S, G, B and H */
+    private static int bsgs_giant(FP48 S, FP48 G, FP48[] B, int[] H, int lo, int hi, int m) {
+        int i, j, k;
+        FP48 g = new FP48(G);
+        FP48 t = new FP48(S);
+        if (lo > 0) t.mul(g.pow(new BIG(lo)));
+        for (i = lo; i < hi; i++) {
+            for (k = bsgs_key(t) & (H.length - 1); H[k] != 0; k = (k + 1) & (H.length - 1)) {
+                j = H[k] - 1;
+                if (t.equals(B[j])) return i * m + j - MAXPIN;
+            }
+            t.mul(g);
+        }
+        return 0;
+    }
+
     /* Functions to support M-Pin Full */
 
     public static int PRECOMPUTE(byte[] TOKEN, byte[] CID, byte[] G1, byte[] G2) {
@@ -571,7 +752,7 @@ public class MPIN256 {
 
         W = PAIR256.G1mul(W, x);
 
-        BIG r = new BIG(ROM.CURVE_Order);
+        BIG r = CURVE_CONST.CURVE_Order;
 
         z.add(h);	//new
         z.mod(r);
@@ -594,10 +775,14 @@ public class MPIN256 {
     /* Z=r.A - no time permits involved */
 
     public static int SERVER_KEY(int sha, byte[] Z, byte[] SST, byte[] W, byte[] H, byte[] HID, byte[] xID, byte[] xCID, byte[] SK) {
+        return SERVER_KEY(sha, Z, new MPIN256ServerContext(ECP8.fromBytes(SST), false), W, H, HID, xID, xCID, SK);
+    }
+
+    /* As above, but with the server secret already decoded into a context */
+    public static int SERVER_KEY(int sha, byte[] Z, MPIN256ServerContext SC, byte[] W, byte[] H, byte[] HID, byte[] xID, byte[] xCID, byte[] SK) {
         byte[] t;
 
-        ECP8 sQ = ECP8.fromBytes(SST);
-        if (sQ.is_infinity()) return INVALID_POINT;
+        if (!SC.valid()) return INVALID_POINT;
         ECP R = ECP.fromBytes(Z);
         if (R.is_infinity()) return INVALID_POINT;
         ECP A = ECP.fromBytes(HID);
@@ -616,8 +801,7 @@ public class MPIN256 {
         R.add(A);
 
         U = PAIR256.G1mul(U, w);
-        FP48 g = PAIR256.ate(sQ, R);
-        g = PAIR256.fexp(g);
+        FP48 g = SC.pairsQ(R);
 
         FP16 c = g.trace();
 
@@ -632,7 +816,7 @@ public class MPIN256 {
     public static void GET_Y(int sha, int TimeValue, byte[] xCID, byte[] Y) {
         byte[] h=HMAC.GPhashit(HMAC.MC_SHA2,sha,EFS,null,TimeValue,xCID);
         BIG y = BIG.fromBytes(h);
-        BIG q = new BIG(ROM.CURVE_Order);
+        BIG q = CURVE_CONST.CURVE_Order;
         y.mod(q);
         y.toBytes(Y);
     }
@@ -662,6 +846,11 @@ public class MPIN256 {
 
     /* One pass MPIN Server */
     public static int SERVER(int sha, int date, byte[] HID, byte[] HTID, byte[] Y, byte[] SST, byte[] xID, byte[] xCID, byte[] SEC, byte[] E, byte[] F, byte[] CID, int TimeValue) {
+        return SERVER(sha, date, HID, HTID, Y, new MPIN256ServerContext(ECP8.fromBytes(SST), false), xID, xCID, SEC, E, F, CID, TimeValue);
+    }
+
+    /* One pass MPIN Server, with the server secret already decoded into a context */
+    public static int SERVER(int sha, int date, byte[] HID, byte[] HTID, byte[] Y, MPIN256ServerContext SC, byte[] xID, byte[] xCID, byte[] SEC, byte[] E, byte[] F, byte[] CID, int TimeValue) {
         int rtn = 0;
 
         byte[] pID;
@@ -674,7 +863,7 @@ public class MPIN256 {
 
         GET_Y(sha, TimeValue, pID, Y);
 
-        rtn = SERVER_2(date, HID, HTID, Y, SST, xID, xCID, SEC, E, F);
+        rtn = SERVER_2(date, HID, HTID, Y, SC, xID, xCID, SEC, E, F);
         if (rtn != 0)
             return rtn;
 
@@ -34,6 +34,8 @@
 
 package org.miracl.core.XXX;
 
+import org.miracl.core.LRU;
+
 public final class PAIR {
 
 //	public static final boolean GT_STRONG=false;
@@ -138,7 +140,7 @@ public final class PAIR {
 
     /* prepare ate parameter, n=6u+2 (BN) or n=u (BLS), n3=3*n */
     public static int lbits(BIG n3, BIG n) {
-        n.copy(new BIG(ROM.CURVE_Bnx));
+        n.copy(PAIR_CONST.CURVE_Bnx);
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
             n.pmul(6);
             if (CONFIG_CURVE.SIGN_OF_X == CONFIG_CURVE.POSITIVEX) {
@@ -224,11 +226,7 @@ public final class PAIR {
         ECP2 P = new ECP2(GV);
 
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
-            f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
-                f.inverse();
-                f.norm();
-            }
+            f = PAIR_CONST.TWIST_FROB;
         }
 
         ECP2 A = new ECP2();
@@ -334,11 +332,7 @@ public final class PAIR {
         Q.affine();
 
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
-            f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
-                f.inverse();
-                f.norm();
-            }
+            f = PAIR_CONST.TWIST_FROB;
         }
 
         FP Qx = new FP(Q.getx());
@@ -383,6 +377,54 @@ public final class PAIR {
         }
     }
 
+    /* Cache of precomputed line function tables for G2 points that are used over and over (public keys etc.), keyed by compressed point */
+    public static final LRU<FP4[]> G2_CACHE = new LRU<FP4[]>(1024);
+
+    /* Return cached precomputed table for P1. A table is only built on the second request for the same point, else returns null */
+    public static FP4[] cached_precomp(ECP2 P1) {
+        if (P1.is_infinity()) return null;
+        byte[] K = new byte[2 * CONFIG_BIG.MODBYTES + 1];
+        ECP2 P = new ECP2(P1);
+        P.affine();
+        P.toBytes(K, true);
+
+        FP4[] T = G2_CACHE.get(K);
+        if (T == null && G2_CACHE.admit(K)) {
+            T = precomp(P);
+            G2_CACHE.put(K, T);
+        }
+        return T;
+    }
+
+    /* Accumulate another set of line functions for n-pairing, using a cached precomputed table for P1 when there is one */
+    public static void another_cached(FP12[] r, ECP2 P1, ECP Q1) {
+        if (Q1.is_infinity()) return;
+        FP4[] T = cached_precomp(P1);
+        if (T != null) another_pc(r, T, Q1);
+        else another(r, P1, Q1);
+    }
+
+    /* As above, but keyed by K, the serialised P1 the caller already has - P1 must be ECP2.fromBytes(K). A hit then costs */
+    /* no inversion or re-encoding. Any encoding of P1 will do, though a point seen in two encodings gets two entries */
+    public static FP4[] cached_precomp(byte[] K, ECP2 P1) {
+        if (P1.is_infinity()) return null;
+        FP4[] T = G2_CACHE.get(K);
+        if (T == null && G2_CACHE.admit(K)) {
+            ECP2 P = new ECP2(P1);
+            P.affine();
+            T = precomp(P);
+            G2_CACHE.put(K, T);
+        }
+        return T;
+    }
+
+    public static void another_cached(FP12[] r, byte[] K, ECP2 P1, ECP Q1) {
+        if (Q1.is_infinity()) return;
+        FP4[] T = cached_precomp(K, P1);
+        if (T != null) another_pc(r, T, Q1);
+        else another(r, P1, Q1);
+    }
+
     /* Optimal R-ate pairing */
     public static FP12 ate(ECP2 P1, ECP Q1) {
         FP2 f;
@@ -401,11 +443,7 @@ public final class PAIR {
         Q.affine();
 
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
-            f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
-                f.inverse();
-                f.norm();
-            }
+            f = PAIR_CONST.TWIST_FROB;
         }
 
         FP Qx = new FP(Q.getx());
@@ -482,11 +520,7 @@ public final class PAIR {
         S.affine();
 
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
-            f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
-                f.inverse();
-                f.norm();
-            }
+            f = PAIR_CONST.TWIST_FROB;
         }
 
         FP Qx = new FP(Q.getx());
@@ -563,10 +597,35 @@ public final class PAIR {
         return r;
     }
 
+    /* Product of pairings e(Q[0],P[0]).e(Q[1],P[1])... sharing one Miller loop accumulator and a single final exponentiation.
+       Pairs with a point at infinity contribute 1. Nothing is cached - callers that see the same G2 points again should use another_cached */
+    public static FP12 multiPairing(ECP2[] Q1, ECP[] P1) {
+        int i, j, m = 0;
+        for (i = 0; i < P1.length; i++)
+            if (!P1[i].is_infinity() && !Q1[i].is_infinity()) m++;
+
+// put the rest into affine form together, so that another() need not invert each one
+        ECP2[] Q = new ECP2[m];
+        ECP[] P = new ECP[m];
+        for (i = j = 0; i < P1.length; i++) {
+            if (P1[i].is_infinity() || Q1[i].is_infinity()) continue;
+            Q[j] = new ECP2(Q1[i]);
+            P[j] = new ECP(P1[i]);
+            j++;
+        }
+        ECP2.batchAffine(Q);
+        ECP.batchAffine(P);
+
+        FP12[] r = initmp();
+        for (j = 0; j < m; j++)
+            another(r, Q[j], P[j]);
+        return fexp(miller(r));
+    }
+
     /* final exponentiation - keep separate for multi-pairings and to avoid thrashing stack */
     public static FP12 fexp(FP12 m) {
-        FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-        BIG x = new BIG(ROM.CURVE_Bnx);
+        FP2 f = PAIR_CONST.FROB;
+        BIG x = new BIG(PAIR_CONST.CURVE_Bnx);
         FP12 r = new FP12(m);
 
         /* Easy part of final exp */
@@ -695,7 +754,7 @@ public final class PAIR {
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
             int i, j;
             BIG t = new BIG(0);
-            BIG q = new BIG(ROM.CURVE_Order);
+            BIG q = CURVE_CONST.CURVE_Order;
 
             BIG[] v = new BIG[2];
             for (i = 0; i < 2; i++) {
@@ -715,8 +774,8 @@ public final class PAIR {
                 }
         } else {
             // -(x^2).P = (Beta.x,y)
-            BIG q = new BIG(ROM.CURVE_Order);
-            BIG x = new BIG(ROM.CURVE_Bnx);
+            BIG q = CURVE_CONST.CURVE_Order;
+            BIG x = PAIR_CONST.CURVE_Bnx;
             BIG x2 = BIG.smul(x, x);
             u[0] = new BIG(e);
             u[0].mod(x2);
@@ -733,7 +792,7 @@ public final class PAIR {
         if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
             int i, j;
             BIG t = new BIG(0);
-            BIG q = new BIG(ROM.CURVE_Order);
+            BIG q = CURVE_CONST.CURVE_Order;
 
             BIG[] v = new BIG[4];
             for (i = 0; i < 4; i++) {
@@ -752,8 +811,8 @@ public final class PAIR {
                     u[i].mod(q);
                 }
         } else {
-            BIG q = new BIG(ROM.CURVE_Order);
-            BIG x = new BIG(ROM.CURVE_Bnx);
+            BIG q = CURVE_CONST.CURVE_Order;
+            BIG x = PAIR_CONST.CURVE_Bnx;
             BIG w = new BIG(e);
             for (int i = 0; i < 3; i++) {
                 u[i] = new BIG(w);
@@ -779,8 +838,8 @@ public final class PAIR {
             int i, np, nn;
             ECP Q = new ECP();
             Q.copy(P); Q.affine();
-            BIG q = new BIG(ROM.CURVE_Order);
-            FP cru = new FP(new BIG(ROM.CURVE_Cru));
+            BIG q = CURVE_CONST.CURVE_Order;
+            FP cru = PAIR_CONST.CURVE_Cru;
             BIG t = new BIG(0);
             BIG[] u = glv(e);
             Q.getx().mul(cru);
@@ -815,14 +874,9 @@ public final class PAIR {
         ECP2 R;
         if (CONFIG_CURVE.USE_GS_G2) {
             ECP2[] Q = new ECP2[4];
-            FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-
-            if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
-                f.inverse();
-                f.norm();
-            }
+            FP2 f = PAIR_CONST.TWIST_FROB;
 
-            BIG q = new BIG(ROM.CURVE_Order);
+            BIG q = CURVE_CONST.CURVE_Order;
             BIG[] u = gs(e);
 
             BIG t = new BIG(0);
@@ -857,8 +911,8 @@ public final class PAIR {
         FP12 r;
         if (CONFIG_CURVE.USE_GS_GT) {
             FP12[] g = new FP12[4];
-            FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            BIG q = new BIG(ROM.CURVE_Order);
+            FP2 f = PAIR_CONST.FROB;
+            BIG q = CURVE_CONST.CURVE_Order;
             BIG t = new BIG(0);
             int i, np, nn;
             BIG[] u = gs(e);
@@ -886,27 +940,48 @@ public final class PAIR {
     }
 
 /* test G1 group membership */
+/* Every point on a BN curve is in G1. On a BLS curve P is in G1 iff (Beta.x,y) = -(x^2).P */
+/* see Scott, "A note on group membership tests for G1, G2 and GT on BLS pairing-friendly curves" */
     public static boolean G1member(ECP P)
     {
-		BIG q=new BIG(ROM.CURVE_Order);  
         if (P.is_infinity()) return false;
-        ECP W=G1mul(P,q);
-        if (!W.is_infinity()) return false;
-        return true;
+        if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) return true;
+        BIG x = PAIR_CONST.CURVE_Bnx;
+        ECP W = P.mulVartime(BIG.smul(x, x));
+        W.neg();
+        ECP T = new ECP(P);
+        T.affine();
+        T.getx().mul(PAIR_CONST.CURVE_Cru);
+        return W.equals(T);
     }
 
 /* test G2 group membership */
+/* For BLS curves check psi(P) = [x]P, for BN curves [x+1]P+psi([x]P)+psi^2([x]P) = psi^3([2x]P) */
     public static boolean G2member(ECP2 P)
     {
-		BIG q=new BIG(ROM.CURVE_Order);  
         if (P.is_infinity()) return false;
-        ECP2 W=G2mul(P,q);
-        if (!W.is_infinity()) return false;
-        return true;
+        FP2 f = PAIR_CONST.TWIST_FROB;
+        ECP2 W = P.mul(PAIR_CONST.CURVE_Bnx);
+        if (CONFIG_CURVE.SIGN_OF_X == CONFIG_CURVE.NEGATIVEX) W.neg();
+        ECP2 T = new ECP2(P);
+        if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
+            ECP2 L = new ECP2(W);
+            L.add(P);
+            T.copy(W); T.frob(f);
+            L.add(T);
+            T.frob(f);
+            L.add(T);
+            T.frob(f);
+            T.dbl();
+            return L.equals(T);
+        }
+        T.frob(f);
+        return W.equals(T);
     }
 
 /* test GT group membership */
 /* First check that m!=1, conj(m)*m==1, and m.m^{p^4}=m^{p^2} */
+/* then as for G2, m^p = m^x for BLS curves, and m^{x+1}.(m^x)^p.(m^x)^{p^2} = (m^{2x})^{p^3} for BN curves */
 
     public static boolean GTmember(FP12 m)
     {
@@ -916,7 +991,7 @@ public final class PAIR {
         r.mul(m);
         if (!r.isunity()) return false;
 
-        FP2 f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+        FP2 f=PAIR_CONST.FROB;
 
         r.copy(m); r.frob(f); r.frob(f);
         FP12 w=new FP12(r); w.frob(f); w.frob(f);
@@ -924,11 +999,20 @@ public final class PAIR {
 
         if (!w.equals(r)) return false;
 
-        BIG q=new BIG(ROM.CURVE_Order);
-        w.copy(m); 
-        r.copy(GTpow(w,q));
-        if (!r.isunity()) return false;
-        return true;
+        w = m.pow(PAIR_CONST.CURVE_Bnx);
+        if (CONFIG_CURVE.SIGN_OF_X == CONFIG_CURVE.NEGATIVEX) w.conj();
+        r.copy(m);
+        if (CONFIG_CURVE.CURVE_PAIRING_TYPE == CONFIG_CURVE.BN) {
+            r.mul(w);
+            FP12 t = new FP12(w);
+            t.frob(f);
+            r.mul(t);
+            t.frob(f);
+            r.mul(t);
+            w.usqr();
+            w.frob(f); w.frob(f); w.frob(f);
+        } else r.frob(f);
+        return r.equals(w);
     }
 
 }
@@ -34,6 +34,8 @@
 
 package org.miracl.core.XXX;
 
+import org.miracl.core.LRU;
+
 public final class PAIR192 {
 
 //	public static final boolean GT_STRONG=false;
@@ -135,7 +137,7 @@ public final class PAIR192 {
 
     /* prepare ate parameter, n=6u+2 (BN) or n=u (BLS), n3=3*n */
     public static int lbits(BIG n3, BIG n) {
-        n.copy(new BIG(ROM.CURVE_Bnx));
+        n.copy(PAIR_CONST.CURVE_Bnx);
         n3.copy(n);
         n3.pmul(3);
         n3.norm();
@@ -314,6 +316,54 @@ public final class PAIR192 {
 
     }
 
+    /* Cache of precomputed line function tables for G2 points that are used over and over (public keys etc.), keyed by compressed point */
+    public static final LRU<FP8[]> G2_CACHE = new LRU<FP8[]>(1024);
+
+    /* Return cached precomputed table for P1. A table is only built on the second request for the same point, else returns null */
+    public static FP8[] cached_precomp(ECP4 P1) {
+        if (P1.is_infinity()) return null;
+        byte[] K = new byte[4 * CONFIG_BIG.MODBYTES + 1];
+        ECP4 P = new ECP4(P1);
+        P.affine();
+        P.toBytes(K, true);
+
+        FP8[] T = G2_CACHE.get(K);
+        if (T == null && G2_CACHE.admit(K)) {
+            T = precomp(P);
+            G2_CACHE.put(K, T);
+        }
+        return T;
+    }
+
+    /* Accumulate another set of line functions for n-pairing, using a cached precomputed table for P1 when there is one */
+    public static void another_cached(FP24[] r, ECP4 P1, ECP Q1) {
+        if (Q1.is_infinity()) return;
+        FP8[] T = cached_precomp(P1);
+        if (T != null) another_pc(r, T, Q1);
+        else another(r, P1, Q1);
+    }
+
+    /* As above, but keyed by K, the serialised P1 the caller already has - P1 must be ECP4.fromBytes(K). A hit then costs */
+    /* no inversion or re-encoding. Any encoding of P1 will do, though a point seen in two encodings gets two entries */
+    public static FP8[] cached_precomp(byte[] K, ECP4 P1) {
+        if (P1.is_infinity()) return null;
+        FP8[] T = G2_CACHE.get(K);
+        if (T == null && G2_CACHE.admit(K)) {
+            ECP4 P = new ECP4(P1);
+            P.affine();
+            T = precomp(P);
+            G2_CACHE.put(K, T);
+        }
+        return T;
+    }
+
+    public static void another_cached(FP24[] r, byte[] K, ECP4 P1, ECP Q1) {
+        if (Q1.is_infinity()) return;
+        FP8[] T = cached_precomp(K, P1);
+        if (T != null) another_pc(r, T, Q1);
+        else another(r, P1, Q1);
+    }
+
     /* Optimal R-ate pairing */
     public static FP24 ate(ECP4 P1, ECP Q1) {
         FP2 f;
@@ -437,10 +487,35 @@ public final class PAIR192 {
         return r;
     }
 
+    /* Product of pairings e(Q[0],P[0]).e(Q[1],P[1])... sharing one Miller loop accumulator and a single final exponentiation.
+       Pairs with a point at infinity contribute 1. Nothing is cached - callers that see the same G2 points again should use another_cached */
+    public static FP24 multiPairing(ECP4[] Q1, ECP[] P1) {
+        int i, j, m = 0;
+        for (i = 0; i < P1.length; i++)
+            if (!P1[i].is_infinity() && !Q1[i].is_infinity()) m++;
+
+// put the rest into affine form together, so that another() need not invert each one
+        ECP4[] Q = new ECP4[m];
+        ECP[] P = new ECP[m];
+        for (i = j = 0; i < P1.length; i++) {
+            if (P1[i].is_infinity() || Q1[i].is_infinity()) continue;
+            Q[j] = new ECP4(Q1[i]);
+            P[j] = new ECP(P1[i]);
+            j++;
+        }
+        ECP4.batchAffine(Q);
+        ECP.batchAffine(P);
+
+        FP24[] r = initmp();
+        for (j = 0; j < m; j++)
+            another(r, Q[j], P[j]);
+        return fexp(miller(r));
+    }
+
     /* final exponentiation - keep separate for multi-pairings and to avoid thrashing stack */
     public static FP24 fexp(FP24 m) {
-        FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-        BIG x = new BIG(ROM.CURVE_Bnx);
+        FP2 f = PAIR_CONST.FROB;
+        BIG x = new BIG(PAIR_CONST.CURVE_Bnx);
         FP24 r = new FP24(m);
 
         /* Easy part of final exp */
@@ -532,8 +607,8 @@ public final class PAIR192 {
     public static BIG[] glv(BIG e) {
         BIG[] u = new BIG[2];
 // -(x^4).P = (Beta.x,y)
-        BIG q = new BIG(ROM.CURVE_Order);
-        BIG x = new BIG(ROM.CURVE_Bnx);
+        BIG q = CURVE_CONST.CURVE_Order;
+        BIG x = PAIR_CONST.CURVE_Bnx;
         BIG x2 = BIG.smul(x, x);
         x = BIG.smul(x2, x2);
         u[0] = new BIG(e);
@@ -549,8 +624,8 @@ public final class PAIR192 {
     public static BIG[] gs(BIG e) {
         BIG[] u = new BIG[8];
 
-        BIG q = new BIG(ROM.CURVE_Order);
-        BIG x = new BIG(ROM.CURVE_Bnx);
+        BIG q = CURVE_CONST.CURVE_Order;
+        BIG x = PAIR_CONST.CURVE_Bnx;
         BIG w = new BIG(e);
         for (int i = 0; i < 7; i++) {
             u[i] = new BIG(w);
@@ -577,8 +652,8 @@ public final class PAIR192 {
             int i, np, nn;
             ECP Q = new ECP();
             Q.copy(P); Q.affine();
-            BIG q = new BIG(ROM.CURVE_Order);
-            FP cru = new FP(new BIG(ROM.CURVE_Cru));
+            BIG q = CURVE_CONST.CURVE_Order;
+            FP cru = PAIR_CONST.CURVE_Cru;
             BIG t = new BIG(0);
             BIG[] u = glv(e);
             Q.getx().mul(cru);
@@ -615,7 +690,7 @@ public final class PAIR192 {
             ECP4[] Q = new ECP4[8];
             FP2[] F = ECP4.frob_constants();
 
-            BIG q = new BIG(ROM.CURVE_Order);
+            BIG q = CURVE_CONST.CURVE_Order;
             BIG[] u = gs(e);
 
             BIG t = new BIG(0);
@@ -650,8 +725,8 @@ public final class PAIR192 {
         FP24 r;
         if (CONFIG_CURVE.USE_GS_GT) {
             FP24[] g = new FP24[8];
-            FP2 f = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
-            BIG q = new BIG(ROM.CURVE_Order);
+            FP2 f = PAIR_CONST.FROB;
+            BIG q = CURVE_CONST.CURVE_Order;
             BIG t = new BIG(0);
             int i, np, nn;
             BIG[] u = gs(e);
@@ -679,27 +754,37 @@ public final class PAIR192 {
     }
 
 /* test G1 group membership */
+/* P is in G1 iff (Beta.x,y) = -(x^4).P */
+/* see Scott, "A note on group membership tests for G1, G2 and GT on BLS pairing-friendly curves" */
     public static boolean G1member(ECP P)
     {
-		BIG q=new BIG(ROM.CURVE_Order);  
         if (P.is_infinity()) return false;
-        ECP W=G1mul(P,q);
-        if (!W.is_infinity()) return false;
-        return true;
+        BIG x = new BIG(PAIR_CONST.CURVE_Bnx);
+        for (int i = 1; i < 4; i *= 2)
+            x = BIG.smul(x, x);
+        ECP W = P.mulVartime(x);
+        W.neg();
+        ECP T = new ECP(P);
+        T.affine();
+        T.getx().mul(PAIR_CONST.CURVE_Cru);
+        return W.equals(T);
     }
 
-/* test G2 group membership */
+/* test G2 group membership - check psi(P) = [x]P */
     public static boolean G2member(ECP4 P)
     {
-		BIG q=new BIG(ROM.CURVE_Order);  
         if (P.is_infinity()) return false;
-        ECP4 W=G2mul(P,q);
-        if (!W.is_infinity()) return false;
-        return true;
+        FP2[] F = ECP4.frob_constants();
+        ECP4 W = P.mul(PAIR_CONST.CURVE_Bnx);
+        if (CONFIG_CURVE.SIGN_OF_X == CONFIG_CURVE.NEGATIVEX) W.neg();
+        ECP4 T = new ECP4(P);
+        T.frob(F, 1);
+        return W.equals(T);
     }
 
 /* test GT group membership */
 /* First check that m!=1, conj(m)*m==1, and m.m^{p^8}=m^{p^4} */
+/* then m^p = m^x, as for G2 */
 
     public static boolean GTmember(FP24 m)
     {
@@ -709,7 +794,7 @@ public final class PAIR192 {
         r.mul(m);
         if (!r.isunity()) return false;
 
-        FP2 f=new FP2(new BIG(ROM.Fra),new BIG(ROM.Frb));
+        FP2 f=PAIR_CONST.FROB;
 
         r.copy(m); r.frob(f,4); 
         FP24 w=new FP24(r); w.frob(f,4);
@@ -717,11 +802,11 @@ public final class PAIR192 {
 
         if (!w.equals(r)) return false;
 
-        BIG q=new BIG(ROM.CURVE_Order);
-        w.copy(m); 
-        r.copy(GTpow(w,q));
-        if (!r.isunity()) return false;
-        return true;
+        w = m.pow(PAIR_CONST.CURVE_Bnx);
+        if (CONFIG_CURVE.SIGN_OF_X == CONFIG_CURVE.NEGATIVEX) w.conj();
+        r.copy(m); r.frob(f, 1);
+        return r.equals(w);
     }
+
 }
 
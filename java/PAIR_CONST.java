@@ -0,0 +1,60 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+
+/* Pairing-friendly curve constants, converted from the ROM once on first use and then shared */
+/* Class initialisation is thread-safe. These objects are shared by the whole library, so they are package-private
+   and must NOT be modified - make a copy first. Code outside the package builds its own from ROM */
+
+package org.miracl.core.XXX;
+
+final class PAIR_CONST {
+    static final BIG CURVE_Bnx = new BIG(ROM.CURVE_Bnx);
+    static final FP CURVE_Cru = new FP(new BIG(ROM.CURVE_Cru));
+
+/* Frobenius constant Fra+i.Frb */
+    static final FP2 FROB = new FP2(new BIG(ROM.Fra), new BIG(ROM.Frb));
+
+/* Frobenius constant as applied to points on the sextic twist - inverted for an M-type twist */
+    static final FP2 TWIST_FROB = twist_frob();
+
+    private static FP2 twist_frob() {
+        FP2 f = new FP2(FROB);
+        if (CONFIG_CURVE.SEXTIC_TWIST == CONFIG_CURVE.M_TYPE) {
+            f.inverse();
+            f.norm();
+        }
+        return f;
+    }
+
+    private PAIR_CONST() {}
+}
@@ -0,0 +1,81 @@
+/*
+   Copyright (C) 2019 MIRACL UK Ltd.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+     https://www.gnu.org/licenses/agpl-3.0.en.html
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   You can be released from the requirements of the license by purchasing
+   a commercial license. Buying such a license is mandatory as soon as you
+   develop commercial activities involving the MIRACL Core Crypto SDK
+   without disclosing the source code of your own applications, or shipping
+   the MIRACL Core Crypto SDK with a closed source product.
+*/
+
+/* A long-lived elliptic curve public key, decoded once, together with a precomputed table of its odd multiples */
+/* Use it in place of the serialised key when the same key is used for many ECDSA verifications or ECDH agreements */
+/* Nothing changes after construction, so one context can be shared freely between threads */
+
+package org.miracl.core.XXX;
+
+public final class PublicKeyContext {
+    public static final int WINDOW = 6; /* table holds W,3W,..,(2^WINDOW-1).W - anything from 5 to 7 is sensible */
+
+    private final ECP W;
+    private final ECP[] T;
+    private final int w;
+
+    public PublicKeyContext(byte[] WD) {
+        this(WD, WINDOW);
+    }
+
+    /* w is clamped to 2..7 - NAF digits are kept in a byte, and beyond 7 the table costs more than it saves */
+    public PublicKeyContext(byte[] WD, int w) {
+        if (w < 2) w = 2;
+        if (w > 7) w = 7;
+        W = ECP.fromBytes(WD);
+        if (W.is_infinity() || CONFIG_CURVE.CURVETYPE == CONFIG_CURVE.MONTGOMERY) T = null;
+        else T = ECP.oddmults(W, w);
+        this.w = w;
+    }
+
+    /* false if the key did not decode to a point on the curve */
+    public boolean valid() {
+        return !W.is_infinity();
+    }
+
+    /* copy of the decoded key */
+    public ECP point() {
+        return new ECP(W);
+    }
+
+    /* return e.W, constant time */
+    ECP mul(BIG e) {
+        if (T == null) return W.mul(e);
+        return ECP.tmul(T, w, e);
+    }
+
+    /* return e.W+f.G, for public e and f only */
+    ECP mul2(BIG e, BIG f) {
+        if (T == null) return W.mul2(e, ECP.generator(), f);
+        return ECP.tmul2(T, w, e, f);
+    }
+}
@@ -34,6 +34,13 @@
 
 package org.miracl.core.XXX;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import org.miracl.core.RAND;
 import org.miracl.core.HMAC;
 
@@ -46,66 +53,264 @@ public final class RSA {
 
 	public static final int HASH_TYPE=SHA256;
 
+	public static final int BAD_PARAMS=-11;
+
 /* Hash number (optional) and string to array size of Bigs */
 
 /* generate an RSA key pair */
 
-	public static void KEY_PAIR(RAND rng,int e,private_key PRIV,public_key PUB)
-	{ /* IEEE1363 A16.11/A16.12 more or less */
+	private static final int SIEVE=4096; /* candidates per sieve window */
+	private static final int SMALL_PRIMES=1<<14; /* sieve with odd primes below this */
 
-		int n=PUB.n.getlen()/2;
-		FF t = new FF(n);
-		FF p1=new FF(n);
-		FF q1=new FF(n);
+	private static final int[] SP=small_primes(SMALL_PRIMES);
+
+	/* odd primes less than n, by the sieve of Eratosthenes */
+	private static int[] small_primes(int n)
+	{
+		int i,j,k=0;
+		boolean[] c=new boolean[n];
+		for (i=3;i*i<n;i+=2)
+			if (!c[i]) for (j=i*i;j<n;j+=2*i) c[j]=true;
+		for (i=3;i<n;i+=2) if (!c[i]) k++;
+		int[] P=new int[k];
+		for (i=3,k=0;i<n;i+=2) if (!c[i]) P[k++]=i;
+		return P;
+	}
+
+	/* Miller-Rabin rounds for a random candidate of this many bits, as in FIPS 186-4 appendix C.3 */
+	private static int mr_rounds(int bits)
+	{
+		if (bits>=1536) return 4;
+		if (bits>=1024) return 5;
+		if (bits>=512) return 7;
+		return 10;
+	}
+
+	/* most primes allowed in a modulus of this many bits - as OpenSSL */
+	private static int max_primes(int bits)
+	{
+		if (bits<1024) return 2;
+		if (bits<4096) return 3;
+		if (bits<8192) return 4;
+		return 5;
+	}
 
+	/* random prime p=3 mod 4 of at most bits bits, such that p-1 has no factor in common with e. */
+	/* Candidates p, p+4, p+8.. are sieved a window at a time, and only survivors get Miller-Rabin */
+	private static void rsa_prime(RAND rng,int e,FF p,int bits)
+	{
+		int i,j,q,r,inv;
+		int rounds=mr_rounds(bits);
+		boolean[] c=new boolean[SIEVE];
+		FF t=new FF(p.getlen());
+
+		p.random(rng);
+		for (i=p.getlen()*BIG.BIGBITS;i>bits;i--) p.shr();
+		while (p.lastbits(2)!=3) p.inc(1);
 		for (;;)
 		{
-			PRIV.p.random(rng);
-			while (PRIV.p.lastbits(2)!=3) PRIV.p.inc(1);
-			while (!FF.prime(PRIV.p,rng)) PRIV.p.inc(4);
+			p.norm();
+			for (j=0;j<SIEVE;j++) c[j]=false;
+			for (i=0;i<SP.length;i++)
+			{ /* strike out p+4j=0 mod q, that is j=-p/4 mod q */
+				q=SP[i];
+				r=p.imod(q);
+				inv=(q+1)/2;
+				inv=(int)(((long)inv*inv)%q);
+				for (j=(int)(((long)(q-r)*inv)%q);j<SIEVE;j+=q) c[j]=true;
+			}
+			for (j=0;j<SIEVE;j++)
+			{
+				if (c[j]) continue;
+				t.copy(p);
+				t.inc(4*j);
+				if (!FF.prime(t,rng,rounds)) continue;
+				t.dec(1);
+				if (t.cfactor(e)) continue;
+				p.inc(4*j);
+				return;
+			}
+			p.inc(4*SIEVE);
+		}
+	}
 
-			p1.copy(PRIV.p);
-			p1.dec(1);
+	/* primes for a key. With an executor all but P[0] are looked for on other threads, each */
+	/* with its own generator seeded from rng. Any the executor has not started by the time */
+	/* they are needed, or refused, or that failed, are found here instead */
+	private static void rsa_primes(RAND rng,final int e,FF[] P,final int bits,ExecutorService ex)
+	{
+		int i,j,k=P.length;
+		boolean interrupted=false;
+		byte[][] S=new byte[k][32];
+		List<FutureTask<FF>> F;
 
-			if (p1.cfactor(e)) continue;
-			break;
+		if (ex==null)
+		{
+			for (i=0;i<k;i++) rsa_prime(rng,e,P[i],bits);
+			return;
 		}
 
-		for (;;)
+		F=new ArrayList<FutureTask<FF>>(k);
+		F.add(null);
+		for (i=1;i<k;i++)
 		{
-			PRIV.q.random(rng);
-			while (PRIV.q.lastbits(2)!=3) PRIV.q.inc(1);
-			while (!FF.prime(PRIV.q,rng)) PRIV.q.inc(4);
-			
-			q1.copy(PRIV.q);
-			q1.dec(1);
+			for (j=0;j<32;j++) S[i][j]=(byte)rng.getByte();
+			final byte[] seed=S[i];
+			final int n=P[i].getlen();
+			FutureTask<FF> f=new FutureTask<FF>(new Callable<FF>() {
+				public FF call() {
+					RAND r=new RAND();
+					FF p=new FF(n);
+					r.clean();
+					r.seed(32,seed);
+					rsa_prime(r,e,p,bits);
+					return p;
+				}
+			});
+			try {
+				ex.execute(f);
+			} catch (RejectedExecutionException x) {
+				/* found below instead */
+			}
+			F.add(f);
+		}
 
-			if (q1.cfactor(e)) continue;
+		rsa_prime(rng,e,P[0],bits);
 
-			break;
+		for (i=1;i<k;i++)
+		{
+			FF p=null;
+			FutureTask<FF> f=F.get(i);
+			f.run();  /* does nothing if the executor has already started it */
+			try {
+				p=f.get();
+			} catch (InterruptedException x) {
+				interrupted=true;
+				f.cancel(true);
+			} catch (ExecutionException x) {
+			}
+			if (p!=null) P[i].copy(p);
+			else
+			{
+				RAND r=new RAND();
+				r.clean();
+				r.seed(32,S[i]);
+				rsa_prime(r,e,P[i],bits);
+			}
+			for (j=0;j<32;j++) S[i][j]=0;
 		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
 
-		PUB.n=FF.mul(PRIV.p,PRIV.q);
-		PUB.e=e;
-
-		t.copy(p1);
+	/* CRT exponent d=1/e mod (p-1)/2, made odd */
+	private static void crt_exponent(int e,FF p,FF d)
+	{
+		FF t=new FF(p.getlen());
+		t.copy(p);
+		t.dec(1);
 		t.shr();
-		PRIV.dp.set(e);
-		PRIV.dp.invmodp(t);
-		if (PRIV.dp.parity()==0) PRIV.dp.add(t);
-		PRIV.dp.norm();
+		d.set(e);
+		d.invmodp(t);
+		if (d.parity()==0) d.add(t);
+		d.norm();
+	}
 
-		t.copy(q1);
-		t.shr();
-		PRIV.dq.set(e);
-		PRIV.dq.invmodp(t);
-		if (PRIV.dq.parity()==0) PRIV.dq.add(t);
-		PRIV.dq.norm();
+	public static void KEY_PAIR(RAND rng,int e,private_key PRIV,public_key PUB)
+	{
+		KEY_PAIR(rng,e,2,PRIV,PUB,null);
+	}
+
+	public static int KEY_PAIR(RAND rng,int e,int k,private_key PRIV,public_key PUB)
+	{
+		return KEY_PAIR(rng,e,k,PRIV,PUB,null);
+	}
+
+	/* x as a longer FF of n words, n a power of 2 times its length */
+	private static FF widen(FF x,int n)
+	{
+		while (x.getlen()<n)
+		{
+			FF y=new FF(2*x.getlen());
+			y.dscopy(x);
+			x=y;
+		}
+		return x;
+	}
+
+	/* low FFLEN words of x.y, when the product is known to fit */
+	private static FF product(FF x,FF y)
+	{
+		int n=CONFIG_FF.FFLEN;
+		FF z=new FF(n);
+		z.copy(FF.mul(widen(x,n),widen(y,n)));
+		return z;
+	}
+
+	/* Key pair with k primes (RFC 8017 section 3.2) - up to 3 for moduli below 4096 bits, 4 below */
+	/* 8192. p and q are the first two, with dp, dq and c=1/p mod q as for a two prime key. The */
+	/* others are held in PRIV.r with their CRT exponents PRIV.d and coefficients */
+	/* PRIV.t[i]=1/(p.q.r[0]..r[i-1]) mod r[i]. Primes are held in a power of 2 number of BIGs, so */
+	/* more than two are only allowed when that makes them shorter than FF.HFLEN - otherwise the */
+	/* decryption would be slower, not faster. With the configurations here that means 4 primes at */
+	/* 4096 bits. Returns BAD_PARAMS, and leaves the key alone, for any other k. If ex is not null */
+	/* the primes are searched for at the same time, on its threads and the calling one */
+	public static int KEY_PAIR(RAND rng,int e,int k,private_key PRIV,public_key PUB,ExecutorService ex)
+	{ /* IEEE1363 A16.11/A16.12 more or less */
+		int i,n=1,bits;
+		FF m;
+
+		if (k<2 || k>max_primes(FF.FF_BITS)) return BAD_PARAMS;
+		bits=FF.FF_BITS/k;
+		while (n*BIG.BIGBITS<bits) n*=2; /* prime length in BIGs */
+		if (k>2 && n>=FF.HFLEN) return BAD_PARAMS; /* no shorter than for k=2 */
+
+		FF[] P=new FF[k];
+		for (i=0;i<k;i++) P[i]=new FF(n);
+		rsa_primes(rng,e,P,bits,ex);
 
+		if (PRIV.p.getlen()!=n)
+		{
+			PRIV.p=new FF(n); PRIV.q=new FF(n);
+			PRIV.dp=new FF(n); PRIV.dq=new FF(n);
+			PRIV.c=new FF(n);
+		}
+		PRIV.p.copy(P[0]);
+		PRIV.q.copy(P[1]);
+		crt_exponent(e,PRIV.p,PRIV.dp);
+		crt_exponent(e,PRIV.q,PRIV.dq);
 		PRIV.c.copy(PRIV.p);
 		PRIV.c.invmodp(PRIV.q);
+		PRIV.mp=new FFMontContext(PRIV.p);
+		PRIV.mq=new FFMontContext(PRIV.q);
 
-		return;
+		m=product(PRIV.p,PRIV.q);
+		if (k==2)
+		{
+			PRIV.r=PRIV.d=PRIV.t=null;
+			PRIV.mr=null;
+		}
+		else
+		{
+			PRIV.r=new FF[k-2];
+			PRIV.d=new FF[k-2];
+			PRIV.t=new FF[k-2];
+			PRIV.mr=new FFMontContext[k-2];
+			for (i=0;i<k-2;i++)
+			{
+				PRIV.r[i]=P[i+2];
+				PRIV.d[i]=new FF(n);
+				crt_exponent(e,PRIV.r[i],PRIV.d[i]);
+				PRIV.mr[i]=new FFMontContext(PRIV.r[i]);
+				PRIV.t[i]=m.dmod(PRIV.mr[i]);
+				PRIV.t[i].invmodp(PRIV.r[i]);
+				m=product(m,PRIV.r[i]);
+			}
+		}
+
+		PUB.n=m;
+		PUB.e=e;
+		PUB.mn=new FFMontContext(PUB.n);
+		return 0;
 	}
 
 /* Mask Generation Function */
@@ -311,6 +516,60 @@ public final class RSA {
 		PRIV.dp.zero();
 		PRIV.dq.zero();
 		PRIV.c.zero();
+		if (PRIV.mp!=null) PRIV.mp.zero();
+		if (PRIV.mq!=null) PRIV.mq.zero();
+		PRIV.mp=PRIV.mq=null;
+		if (PRIV.r!=null)
+		{
+			for (int i=0;i<PRIV.r.length;i++)
+			{
+				PRIV.r[i].zero();
+				PRIV.d[i].zero();
+				PRIV.t[i].zero();
+				PRIV.mr[i].zero();
+			}
+		}
+		PRIV.r=PRIV.d=PRIV.t=null;
+		PRIV.mr=null;
+	}
+
+	/* CRT recombination - returns x mod pq, given jp=x mod p and jq=x mod q, where c=1/p mod q */
+	private static FF garner(FF jp,FF jq,FF p,FF q,FF c,FFMontContext mq)
+	{
+		int n=p.getlen();
+		FF g=new FF(2*n);
+
+		g.dscopy(jp);
+		jp.mod(q);
+		if (FF.comp(jp,jq)>0) jq.add(q);
+		jq.sub(jp);
+		jq.norm();
+
+		FF t=FF.mul(c,jq);
+		jq=t.dmod(mq);
+
+		t=FF.mul(jq,p);
+		g.add(t);
+		g.norm();
+		return g;
+	}
+
+	/* g^d mod the i-th prime of the key, counting p and q as the first two */
+	private static FF crt_power(FF g,private_key PRIV,int i)
+	{
+		FF j;
+		if (i>=2)
+		{ /* g is a power of 2 times the length of r[i-2] - see dmod() */
+			j=g.dmod(PRIV.mr[i-2]);
+			j.skpow(PRIV.d[i-2],PRIV.mr[i-2]);
+			return j;
+		}
+		FF p=(i==0)?PRIV.p:PRIV.q;
+		FFMontContext m=(i==0)?PRIV.mp:PRIV.mq;
+		if (m==null) m=new FFMontContext(p);
+		j=g.dmod(m);
+		j.skpow((i==0)?PRIV.dp:PRIV.dq,m);
+		return j;
 	}
 
 	/* RSA encryption with the public key */
@@ -318,38 +577,86 @@ public final class RSA {
 	{
 		int n=PUB.n.getlen();
 		FF f=new FF(n);
+		FFMontContext mn=(PUB.mn!=null)?PUB.mn:new FFMontContext(PUB.n);
 		FF.fromBytes(f,F);
-		f.power(PUB.e,PUB.n);
+		f.power(PUB.e,mn);
 		f.toBytes(G);
 	}
 
 	/* RSA decryption with the private key */
 	public static void DECRYPT(private_key PRIV,byte[] G,byte[] F)
 	{
-		int n=PRIV.p.getlen();
-		FF g=new FF(2*n);
-
-		FF.fromBytes(g,G);
-		FF jp=g.dmod(PRIV.p);
-		FF jq=g.dmod(PRIV.q);
-
-		jp.skpow(PRIV.dp,PRIV.p);
-		jq.skpow(PRIV.dq,PRIV.q);
+		DECRYPT(PRIV,G,F,null);
+	}
 
-		g.zero();
-		g.dscopy(jp);
-		jp.mod(PRIV.q);
-		if (FF.comp(jp,jq)>0) jq.add(PRIV.q);
-		jq.sub(jp);
-		jq.norm();
+	/* As above, but with the CRT exponentiations run at the same time - all but the first are */
+	/* handed to the executor, the first is done by the calling thread. Any that the executor */
+	/* has not started by the time they are needed, or refused, or that failed, are done in the */
+	/* calling thread, so ex may be a bounded pool that the caller itself is running on */
+	public static void DECRYPT(private_key PRIV,byte[] G,byte[] F,ExecutorService ex)
+	{
+		int i,k=(PRIV.r!=null)?PRIV.r.length+2:2;
+		boolean interrupted=false;
+		final FF g=new FF(CONFIG_FF.FFLEN);
+		final private_key K=PRIV;
+		List<FutureTask<FF>> H=new ArrayList<FutureTask<FF>>(k);
+		FF[] J=new FF[k];
 
-		FF t=FF.mul(PRIV.c,jq);
-		jq=t.dmod(PRIV.q);
+		FF.fromBytes(g,G);
+		H.add(null);
+		for (i=1;i<k;i++)
+		{
+			final int j=i;
+			FutureTask<FF> f=new FutureTask<FF>(new Callable<FF>() {
+				public FF call() {
+					return crt_power(g,K,j);
+				}
+			});
+			if (ex!=null)
+			{
+				try {
+					ex.execute(f);
+				} catch (RejectedExecutionException e) {
+					/* done below instead */
+				}
+			}
+			H.add(f);
+		}
 
-		t=FF.mul(jq,PRIV.p);
-		g.add(t);
-		g.norm();
+		J[0]=crt_power(g,PRIV,0);
 
-		g.toBytes(F);
+		for (i=1;i<k;i++)
+		{
+			FutureTask<FF> f=H.get(i);
+			f.run();  /* does nothing if the executor has already started it */
+			try {
+				J[i]=f.get();
+			} catch (InterruptedException e) {
+				interrupted=true;
+				f.cancel(true);
+			} catch (ExecutionException e) {
+			}
+			if (J[i]==null) J[i]=crt_power(g,PRIV,i);
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+
+		FFMontContext mq=(PRIV.mq!=null)?PRIV.mq:new FFMontContext(PRIV.q);
+		FF m=widen(garner(J[0],J[1],PRIV.p,PRIV.q,PRIV.c,mq),CONFIG_FF.FFLEN);
+		if (PRIV.r!=null)
+		{ /* RFC 8017 5.1.2 step 2.b(v) - m=m+R.((m_i-m).t_i mod r_i), R the product of the primes so far */
+			FF R=product(PRIV.p,PRIV.q);
+			for (i=0;i<PRIV.r.length;i++)
+			{
+				FF h=m.dmod(PRIV.mr[i]);
+				if (FF.comp(h,J[i+2])>0) J[i+2].add(PRIV.r[i]);
+				J[i+2].sub(h);
+				J[i+2].norm();
+				h=FF.mul(PRIV.t[i],J[i+2]).dmod(PRIV.mr[i]);
+				m.add(product(R,h));
+				m.norm();
+				R=product(R,PRIV.r[i]);
+			}
+		}
+		m.toBytes(F);
 	}
 }
@@ -107,6 +107,277 @@ public class TestBLS extends TestCase //
 			System.out.println("Signature is OK");
 		else
 			fail("Signature is *NOT* OK");
- 
+
+		for (int j=0;j<3;j++)
+		{ /* the public key's table is built on the second call, and found by its bytes after that */
+			if (BLS.core_verify(SIG,mess.getBytes(),W)!=0) fail("Signature is *NOT* OK with a cached public key");
+		}
+		if (PAIR.G2_CACHE.get(W)==null) fail("Public key is not cached by its bytes");
+		if (BLS.core_verify(SIG,(mess+"!").getBytes(),W)==0) fail("Wrong message accepted with a cached public key");
+	}
+
+	public static void testAggregate()
+	{
+		RAND rng=new RAND();
+		int BGS=BLS.BGS;
+		int BFS=BLS.BFS;
+		int G1S=BFS+1; /* Group 1 Size compressed */
+		int G2S=2 * BFS+1; /* Group 2 Size compressed */
+		int n=3;
+
+		byte[] S=new byte[BGS];
+		byte[][] W=new byte[n][G2S];
+		byte[][] SIG=new byte[n][G1S];
+		byte[][] SIGM=new byte[n][G1S];
+		byte[][] M=new byte[n][];
+		byte[] AW=new byte[G2S];
+		byte[] ASIG=new byte[G1S];
+		byte[] ASIGM=new byte[G1S];
+		byte[] RAW=new byte[100];
+		byte[] IKM=new byte[32];
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting BLS aggregate signatures");
+
+		if (BLS.init()!=0)
+			fail("Failed to initialize");
+
+		String mess=new String("This is a test message");
+		for (int j=0;j<n;j++)
+		{
+			for (int i=0;i<32;i++)
+				IKM[i]=(byte)rng.getByte();
+			BLS.KeyPairGenerate(IKM,S,W[j]);
+			M[j]=new String("Message number "+j).getBytes();
+			BLS.core_sign(SIG[j],M[j],S);
+			BLS.core_sign(SIGM[j],mess.getBytes(),S);
+		}
+
+		BLS.aggregateSignatures(ASIG,SIG);
+		System.out.print("Aggregate Signature : 0x");  printBinary(ASIG);
+		if (BLS.aggregateVerify(M,W,ASIG)==0)
+			System.out.println("Aggregate Signature is OK");
+		else
+			fail("Aggregate Signature is *NOT* OK");
+
+		M[1]=mess.getBytes();
+		if (BLS.aggregateVerify(M,W,ASIG)==0)
+			fail("Aggregate Signature on wrong messages accepted");
+
+		BLS.aggregateSignatures(ASIGM,SIGM);
+		BLS.aggregatePublicKeys(AW,W);
+		System.out.print("Aggregate Public key : 0x");  printBinary(AW);
+		if (BLS.fastAggregateVerify(mess.getBytes(),W,ASIGM)==0&&BLS.core_verify(ASIGM,mess.getBytes(),AW)==0)
+			System.out.println("Same message Aggregate Signature is OK");
+		else
+			fail("Same message Aggregate Signature is *NOT* OK");
+	}
+
+	public static void testBatchVerify()
+	{
+		RAND rng=new RAND();
+		int BGS=BLS.BGS;
+		int BFS=BLS.BFS;
+		int G1S=BFS+1; /* Group 1 Size compressed */
+		int G2S=2*BFS+1; /* Group 2 Size compressed */
+		int n=4;
+
+		byte[] S=new byte[BGS];
+		byte[][] W=new byte[n][G2S];
+		byte[][] SIG=new byte[n][G1S];
+		byte[][] M=new byte[n][];
+		int[] RES=new int[n];
+		byte[] RAW=new byte[100];
+		byte[] IKM=new byte[32];
+
+		rng.clean();
+		for (int i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting BLS batch verification");
+
+		if (BLS.init()!=0)
+			fail("Failed to initialize");
+
+		for (int j=0;j<n;j++)
+		{
+			for (int i=0;i<32;i++)
+				IKM[i]=(byte)rng.getByte();
+			BLS.KeyPairGenerate(IKM,S,W[j]);
+			M[j]=new String("Message number "+j).getBytes();
+			BLS.core_sign(SIG[j],M[j],S);
+		}
+
+		if (BLS.batchVerify(rng,SIG,M,W,RES)==0)
+			System.out.println("Batch of Signatures is OK");
+		else
+			fail("Batch of Signatures is *NOT* OK");
+
+		BLS.core_sign(SIG[2],M[1],S);
+		if (BLS.batchVerify(rng,SIG,M,W,RES)==0||RES[0]!=0||RES[1]!=0||RES[2]==0||RES[3]!=0)
+			fail("Bad Signature in batch not identified");
+		System.out.println("Bad Signature in batch identified");
+	}
+
+	public static void testMembership()
+	{
+		RAND rng=new RAND();
+		byte[] RAW=new byte[100];
+		int i;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting group membership");
+		BIG r=CURVE_CONST.CURVE_Order;
+		BIG p=CURVE_CONST.Modulus;
+		ECP P=ECP.generator().mul(BIG.randomnum(r,rng));
+		ECP2 Q=ECP2.generator().mul(BIG.randomnum(r,rng));
+		FP12 g=PAIR.fexp(PAIR.ate(Q,P));
+		if (!PAIR.G1member(P) || !PAIR.G2member(Q) || !PAIR.GTmember(g))
+			fail("***Group member rejected");
+
+		ECP2 T;
+		do {
+			T=new ECP2(new FP2(BIG.randomnum(p,rng),BIG.randomnum(p,rng)),0);
+		} while (T.is_infinity());
+		if (PAIR.G2member(T))
+			fail("***Point not in G2 accepted");
+		if (CONFIG_CURVE.CURVE_PAIRING_TYPE!=CONFIG_CURVE.BN)
+		{
+			do {
+				P=new ECP(BIG.randomnum(p,rng));
+			} while (P.is_infinity());
+			if (PAIR.G1member(P))
+				fail("***Point not in G1 accepted");
+		}
+		System.out.println("Group membership tests succeeded");
+	}
+
+	public static void testMultiPairing()
+	{
+		RAND rng=new RAND();
+		byte[] RAW=new byte[100];
+		int i,j,m;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting multi-pairing");
+		BIG r=CURVE_CONST.CURVE_Order;
+		if (!PAIR.multiPairing(new ECP2[0],new ECP[0]).isunity())
+			fail("***Empty multi-pairing is not 1");
+		for (m=1;m<=4;m++)
+		{
+			ECP2[] Q=new ECP2[m];
+			ECP[] P=new ECP[m];
+			for (i=0;i<m;i++)
+			{
+				Q[i]=ECP2.generator().mul(BIG.randomnum(r,rng));
+				P[i]=ECP.generator().mul(BIG.randomnum(r,rng));
+			}
+			if (m==3) P[1].inf();  // pairs with a point at infinity are skipped
+			if (m==4) Q[2].inf();
+			FP12 e=new FP12(1);
+			for (i=0;i<m;i++)
+				if (!P[i].is_infinity() && !Q[i].is_infinity())
+					e.mul(PAIR.fexp(PAIR.ate(Q[i],P[i])));
+			e.reduce();
+			int cached=PAIR.G2_CACHE.size();
+			for (j=0;j<3;j++)
+			{ // repeated G2 points must not find their way into the cache
+				if (!PAIR.multiPairing(Q,P).equals(e))
+					fail("***Multi-pairing differs from product of pairings");
+			}
+			if (PAIR.G2_CACHE.size()!=cached) fail("***Multi-pairing filled the G2 cache");
+		}
+		System.out.println("Multi-pairing tests succeeded");
+	}
+
+	public static void testGTpow()
+	{
+		RAND rng=new RAND();
+		byte[] RAW=new byte[100];
+		int i;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting GT exponentiation");
+		BIG r=CURVE_CONST.CURVE_Order;
+		FP12 w=PAIR.fexp(PAIR.ate(ECP2.generator().mul(BIG.randomnum(r,rng)),ECP.generator().mul(BIG.randomnum(r,rng))));
+
+/* x is sparse, so w^x takes the compressed squaring path - check it against GTpow, and w^x.w^(r-x)=1 */
+		BIG x=new BIG(ROM.CURVE_Bnx);
+		FP12 g=w.pow(x);
+		if (!g.equals(PAIR.GTpow(w,x))) fail("***w^x differs from GTpow");
+		x.rsub(r); x.norm();
+		g.mul(w.pow(x));
+		if (!g.isunity()) fail("***w^x.w^(r-x) is not 1");
+
+/* a random exponent is dense, so takes the ordinary square and multiply loop */
+		x=BIG.randomnum(r,rng);
+		if (!w.pow(x).equals(PAIR.GTpow(w,x))) fail("***w^e differs from GTpow for dense e");
+
+/* 2^100-1 is sparse with a negative NAF digit - check it against 100 squarings and a division */
+		BIG e=new BIG(1); e.shl(100); e.dec(1); e.norm();
+		FP12 h=new FP12(w);
+		for (i=0;i<100;i++) h.usqr();
+		g=new FP12(w); g.conj();
+		h.mul(g); h.reduce();
+		if (!w.pow(e).equals(h)) fail("***w^(2^100-1) is wrong");
+
+/* 1 has g2=0 and cannot be decompressed, so pow must fall back to the ordinary loop */
+		g=new FP12(1);
+		if (!g.pow(new BIG(ROM.CURVE_Bnx)).isunity()) fail("***1^x is not 1");
+		System.out.println("GT exponentiation tests succeeded");
+	}
+
+	public static void testGTcompression()
+	{
+		RAND rng=new RAND();
+		byte[] RAW=new byte[100];
+		byte[] B=new byte[CONFIG_BIG.MODBYTES];
+		byte[] GT=new byte[6*CONFIG_BIG.MODBYTES];
+		byte[] TR=new byte[4*CONFIG_BIG.MODBYTES];
+		int i,j;
+
+		rng.clean();
+		for (i=0;i<100;i++) RAW[i]=(byte)(i);
+		rng.seed(100,RAW);
+
+		System.out.println("\nTesting GT compression");
+		BIG r=CURVE_CONST.CURVE_Order;
+		BIG q=new BIG(ROM.Modulus);
+		BIG s=BIG.randomnum(r,rng);
+		FP12 w=PAIR.fexp(PAIR.ate(ECP2.generator().mul(BIG.randomnum(r,rng)),ECP.generator().mul(BIG.randomnum(r,rng))));
+
+		w.toBytes(GT,true);
+		FP12 g=FP12.fromBytes(GT,true);
+		if (!g.equals(w) || !PAIR.GTmember(g)) fail("***GT compression round trip failed");
+		new FP12(1).toBytes(GT,true);
+		if (!FP12.fromBytes(GT,true).isunity()) fail("***GT compression of 1 failed");
+
+/* untrusted input - random bytes decode to a unitary element, but not to one in GT, and only GTmember can tell */
+		for (i=0;i<6;i++)
+		{
+			BIG.randomnum(q,rng).toBytes(B);
+			for (j=0;j<CONFIG_BIG.MODBYTES;j++) GT[i*CONFIG_BIG.MODBYTES+j]=B[j];
+		}
+		g=FP12.fromBytes(GT,true);
+		FP12 u=new FP12(g); u.conj(); u.mul(g);
+		if (!u.isunity()) fail("***Decompressed element is not unitary");
+		if (PAIR.GTmember(g)) fail("***Random compressed bytes accepted as a member of GT");
+
+		FP4 c=w.compow(s,r);
+		c.toBytes(TR);
+		if (!FP4.fromBytes(TR).equals(PAIR.GTpow(w,s).trace())) fail("***XTR trace round trip failed");
+		System.out.println("GT compression tests succeeded");
 	}
 }
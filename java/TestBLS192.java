@@ -104,5 +104,259 @@ public class TestBLS192 extends TestCase { //
         else
             fail("Signature is *NOT* OK");
 
+        for (int j = 0; j < 3; j++) { /* the public key's table is built on the second call, and found by its bytes after that */
+            if (BLS192.core_verify(SIG, mess.getBytes(), W) != 0) fail("Signature is *NOT* OK with a cached public key");
+        }
+        if (PAIR192.G2_CACHE.get(W) == null) fail("Public key is not cached by its bytes");
+        if (BLS192.core_verify(SIG, (mess + "!").getBytes(), W) == 0) fail("Wrong message accepted with a cached public key");
+    }
+
+    public static void testAggregate192() {
+        RAND rng = new RAND();
+        int BGS = BLS192.BGS;
+        int BFS = BLS192.BFS;
+        int G1S = BFS + 1; /* Group 1 Size compressed */
+        int G2S = 4 * BFS + 1; /* Group 2 Size compressed */
+        int n = 3;
+
+        byte[] S = new byte[BGS];
+        byte[][] W = new byte[n][G2S];
+        byte[][] SIG = new byte[n][G1S];
+        byte[][] SIGM = new byte[n][G1S];
+        byte[][] M = new byte[n][];
+        byte[] AW = new byte[G2S];
+        byte[] ASIG = new byte[G1S];
+        byte[] ASIGM = new byte[G1S];
+        byte[] RAW = new byte[100];
+        byte[] IKM = new byte[48];
+
+        rng.clean();
+        for (int i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting BLS192 aggregate signatures");
+
+        if (BLS192.init() != 0)
+            fail("Failed to initialize");
+
+        String mess = new String("This is a test message");
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < 48; i++)
+                IKM[i] = (byte)rng.getByte();
+            BLS192.KeyPairGenerate(IKM, S, W[j]);
+            M[j] = new String("Message number " + j).getBytes();
+            BLS192.core_sign(SIG[j], M[j], S);
+            BLS192.core_sign(SIGM[j], mess.getBytes(), S);
+        }
+
+        BLS192.aggregateSignatures(ASIG, SIG);
+        System.out.print("Aggregate Signature : 0x");  printBinary(ASIG);
+        if (BLS192.aggregateVerify(M, W, ASIG) == 0)
+            System.out.println("Aggregate Signature is OK");
+        else
+            fail("Aggregate Signature is *NOT* OK");
+
+        M[1] = mess.getBytes();
+        if (BLS192.aggregateVerify(M, W, ASIG) == 0)
+            fail("Aggregate Signature on wrong messages accepted");
+
+        BLS192.aggregateSignatures(ASIGM, SIGM);
+        BLS192.aggregatePublicKeys(AW, W);
+        System.out.print("Aggregate Public key : 0x");  printBinary(AW);
+        if (BLS192.fastAggregateVerify(mess.getBytes(), W, ASIGM) == 0 && BLS192.core_verify(ASIGM, mess.getBytes(), AW) == 0)
+            System.out.println("Same message Aggregate Signature is OK");
+        else
+            fail("Same message Aggregate Signature is *NOT* OK");
+    }
+
+    public static void testBatchVerify192() {
+        RAND rng = new RAND();
+        int BGS = BLS192.BGS;
+        int BFS = BLS192.BFS;
+        int G1S = BFS + 1; /* Group 1 Size compressed */
+        int G2S = 4 * BFS + 1; /* Group 2 Size compressed */
+        int n = 4;
+
+        byte[] S = new byte[BGS];
+        byte[][] W = new byte[n][G2S];
+        byte[][] SIG = new byte[n][G1S];
+        byte[][] M = new byte[n][];
+        int[] RES = new int[n];
+        byte[] RAW = new byte[100];
+        byte[] IKM = new byte[48];
+
+        rng.clean();
+        for (int i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting BLS192 batch verification");
+
+        if (BLS192.init() != 0)
+            fail("Failed to initialize");
+
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < 48; i++)
+                IKM[i] = (byte)rng.getByte();
+            BLS192.KeyPairGenerate(IKM, S, W[j]);
+            M[j] = new String("Message number " + j).getBytes();
+            BLS192.core_sign(SIG[j], M[j], S);
+        }
+
+        if (BLS192.batchVerify(rng, SIG, M, W, RES) == 0)
+            System.out.println("Batch of Signatures is OK");
+        else
+            fail("Batch of Signatures is *NOT* OK");
+
+        BLS192.core_sign(SIG[2], M[1], S);
+        if (BLS192.batchVerify(rng, SIG, M, W, RES) == 0 || RES[0] != 0 || RES[1] != 0 || RES[2] == 0 || RES[3] != 0)
+            fail("Bad Signature in batch not identified");
+        System.out.println("Bad Signature in batch identified");
+    }
+
+    public static void testMembership192() {
+        RAND rng = new RAND();
+        byte[] RAW = new byte[100];
+        int i;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting group membership");
+        BIG r = CURVE_CONST.CURVE_Order;
+        BIG p = CURVE_CONST.Modulus;
+        ECP P = ECP.generator().mul(BIG.randomnum(r, rng));
+        ECP4 Q = ECP4.generator().mul(BIG.randomnum(r, rng));
+        FP24 g = PAIR192.fexp(PAIR192.ate(Q, P));
+        if (!PAIR192.G1member(P) || !PAIR192.G2member(Q) || !PAIR192.GTmember(g))
+            fail("***Group member rejected");
+
+        ECP4 T;
+        do {
+            T = new ECP4(new FP4(new FP2(BIG.randomnum(p, rng), BIG.randomnum(p, rng)), new FP2(BIG.randomnum(p, rng), BIG.randomnum(p, rng))), 0);
+        } while (T.is_infinity());
+        if (PAIR192.G2member(T))
+            fail("***Point not in G2 accepted");
+        do {
+            P = new ECP(BIG.randomnum(p, rng));
+        } while (P.is_infinity());
+        if (PAIR192.G1member(P))
+            fail("***Point not in G1 accepted");
+        System.out.println("Group membership tests succeeded");
+    }
+
+    public static void testMultiPairing192() {
+        RAND rng = new RAND();
+        byte[] RAW = new byte[100];
+        int i, j, m;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting multi-pairing");
+        BIG r = CURVE_CONST.CURVE_Order;
+        if (!PAIR192.multiPairing(new ECP4[0], new ECP[0]).isunity())
+            fail("***Empty multi-pairing is not 1");
+        for (m = 1; m <= 4; m++) {
+            ECP4[] Q = new ECP4[m];
+            ECP[] P = new ECP[m];
+            for (i = 0; i < m; i++) {
+                Q[i] = ECP4.generator().mul(BIG.randomnum(r, rng));
+                P[i] = ECP.generator().mul(BIG.randomnum(r, rng));
+            }
+            if (m == 3) P[1].inf();  // pairs with a point at infinity are skipped
+            if (m == 4) Q[2].inf();
+            FP24 e = new FP24(1);
+            for (i = 0; i < m; i++)
+                if (!P[i].is_infinity() && !Q[i].is_infinity())
+                    e.mul(PAIR192.fexp(PAIR192.ate(Q[i], P[i])));
+            e.reduce();
+            int cached = PAIR192.G2_CACHE.size();
+            for (j = 0; j < 3; j++) { // repeated ECP4 points must not find their way into the cache
+                if (!PAIR192.multiPairing(Q, P).equals(e))
+                    fail("***Multi-pairing differs from product of pairings");
+            }
+            if (PAIR192.G2_CACHE.size() != cached) fail("***Multi-pairing filled the G2 cache");
+        }
+        System.out.println("Multi-pairing tests succeeded");
+    }
+
+    public static void testGTpow192() {
+        RAND rng = new RAND();
+        byte[] RAW = new byte[100];
+        int i;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting GT exponentiation");
+        BIG r = CURVE_CONST.CURVE_Order;
+        FP24 w = PAIR192.fexp(PAIR192.ate(ECP4.generator().mul(BIG.randomnum(r, rng)), ECP.generator().mul(BIG.randomnum(r, rng))));
+
+        /* x is sparse, so w^x takes the compressed squaring path - check it against GTpow, and w^x.w^(r-x)=1 */
+        BIG x = new BIG(ROM.CURVE_Bnx);
+        FP24 g = w.pow(x);
+        if (!g.equals(PAIR192.GTpow(w, x))) fail("***w^x differs from GTpow");
+        x.rsub(r); x.norm();
+        g.mul(w.pow(x));
+        if (!g.isunity()) fail("***w^x.w^(r-x) is not 1");
+
+        /* a random exponent is dense, so takes the ordinary square and multiply loop */
+        x = BIG.randomnum(r, rng);
+        if (!w.pow(x).equals(PAIR192.GTpow(w, x))) fail("***w^e differs from GTpow for dense e");
+
+        /* 2^100-1 is sparse with a negative NAF digit - check it against 100 squarings and a division */
+        BIG e = new BIG(1); e.shl(100); e.dec(1); e.norm();
+        FP24 h = new FP24(w);
+        for (i = 0; i < 100; i++) h.usqr();
+        g = new FP24(w); g.conj();
+        h.mul(g); h.reduce();
+        if (!w.pow(e).equals(h)) fail("***w^(2^100-1) is wrong");
+
+        /* 1 has g2=0 and cannot be decompressed, so pow must fall back to the ordinary loop */
+        g = new FP24(1);
+        if (!g.pow(new BIG(ROM.CURVE_Bnx)).isunity()) fail("***1^x is not 1");
+        System.out.println("GT exponentiation tests succeeded");
+    }
+
+    public static void testGTcompression192() {
+        RAND rng = new RAND();
+        byte[] RAW = new byte[100];
+        byte[] B = new byte[CONFIG_BIG.MODBYTES];
+        byte[] GT = new byte[12 * CONFIG_BIG.MODBYTES];
+        int i, j;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("\nTesting GT compression");
+        BIG r = CURVE_CONST.CURVE_Order;
+        BIG q = new BIG(ROM.Modulus);
+        FP24 w = PAIR192.fexp(PAIR192.ate(ECP4.generator().mul(BIG.randomnum(r, rng)), ECP.generator().mul(BIG.randomnum(r, rng))));
+
+        w.toBytes(GT, true);
+        FP24 g = FP24.fromBytes(GT, true);
+        if (!g.equals(w) || !PAIR192.GTmember(g)) fail("***GT compression round trip failed");
+        new FP24(1).toBytes(GT, true);
+        if (!FP24.fromBytes(GT, true).isunity()) fail("***GT compression of 1 failed");
+
+        /* untrusted input - random bytes decode to a unitary element, but not to one in GT, and only GTmember can tell */
+        for (i = 0; i < 12; i++) {
+            BIG.randomnum(q, rng).toBytes(B);
+            for (j = 0; j < CONFIG_BIG.MODBYTES; j++) GT[i * CONFIG_BIG.MODBYTES + j] = B[j];
+        }
+        g = FP24.fromBytes(GT, true);
+        FP24 u = new FP24(g); u.conj(); u.mul(g);
+        if (!u.isunity()) fail("***Decompressed element is not unitary");
+        if (PAIR192.GTmember(g)) fail("***Random compressed bytes accepted as a member of GT");
+
+        byte[] TR = new byte[8 * CONFIG_BIG.MODBYTES];
+        FP8 tr = w.trace();
+        tr.toBytes(TR);
+        if (!FP8.fromBytes(TR).equals(tr)) fail("***XTR trace round trip failed");
+        System.out.println("GT compression tests succeeded");
     }
 }
@@ -176,6 +176,125 @@ public class TestECDH extends TestCase { //
         }
     }
 
+    public static void testECDSABatch() {
+        if (CONFIG_CURVE.CURVETYPE == CONFIG_CURVE.MONTGOMERY) return;
+        byte[] RAW = new byte[100];
+        RAND rng = new RAND();
+        int i, n = 10;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        int EGS = ECDH.EGS;
+        int EFS = ECDH.EFS;
+        int sha = CONFIG_CURVE.HASH_TYPE;
+
+        byte[] S = new byte[EGS];
+        byte[][] W = new byte[n][2 * EFS + 1];
+        byte[][] M = new byte[n][];
+        byte[][] CS = new byte[n][EGS];
+        byte[][] DS = new byte[n][EGS];
+        int[] RES = new int[n];
+
+        System.out.println("Testing ECDSA batch verification");
+        for (i = 0; i < n; i++) {
+            ECDH.KEY_PAIR_GENERATE(rng, S, W[i]);
+            M[i] = new String("Message number " + i).getBytes();
+            ECDH.SP_DSA(sha, rng, S, M[i], CS[i], DS[i]);
+        }
+        if (ECDH.VP_DSA_BATCH(sha, rng, W, M, CS, DS, RES) != 0) {
+            fail("***ECDSA Batch Verification Failed");
+        } else System.out.println("ECDSA Batch Verification succeeded");
+
+        M[3] = M[4];
+        if (ECDH.VP_DSA_BATCH(sha, rng, W, M, CS, DS, RES) == 0 || RES[3] == 0) {
+            fail("***ECDSA Batch Verification accepted a bad signature");
+        }
+        for (i = 0; i < n; i++)
+            if (i != 3 && RES[i] != 0) fail("***ECDSA Batch Verification rejected a good signature");
+        System.out.println("Bad signature in ECDSA batch identified");
+        System.out.println("");
+    }
+
+    public static void testPublicKeyContext() {
+        byte[] RAW = new byte[100];
+        RAND rng = new RAND();
+        int i, w;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        int EGS = ECDH.EGS;
+        int EFS = ECDH.EFS;
+        int sha = CONFIG_CURVE.HASH_TYPE;
+
+        byte[] S0 = new byte[EGS];
+        byte[] S1 = new byte[EGS];
+        byte[] W0 = new byte[2 * EFS + 1];
+        byte[] W1 = new byte[2 * EFS + 1];
+        byte[] Z0 = new byte[EFS];
+        byte[] Z1 = new byte[EFS];
+        byte[] CS = new byte[EGS];
+        byte[] DS = new byte[EGS];
+        byte[] M = new String("Message to be signed").getBytes();
+
+        System.out.println("Testing precomputed public key contexts");
+        ECDH.KEY_PAIR_GENERATE(rng, S0, W0);
+        ECDH.KEY_PAIR_GENERATE(rng, S1, W1);
+        ECDH.SVDP_DH(S0, W1, Z0);
+
+        for (w = 0; w <= 9; w++) { /* out of range widths are clamped to 2..7 */
+            PublicKeyContext WC = new PublicKeyContext(W1, w);
+            if (!WC.valid()) fail("***Public Key Context rejected a good key");
+            if (ECDH.SVDP_DH(S0, WC, Z1) != 0) fail("***ECDH with Public Key Context Failed");
+            for (i = 0; i < EFS; i++)
+                if (Z0[i] != Z1[i]) fail("***ECDH with Public Key Context gave a different result");
+        }
+
+        if (CONFIG_CURVE.CURVETYPE != CONFIG_CURVE.MONTGOMERY) {
+            for (w = 2; w <= PublicKeyContext.WINDOW; w += PublicKeyContext.WINDOW - 2) {
+                PublicKeyContext WC = (w == PublicKeyContext.WINDOW) ? new PublicKeyContext(W1) : new PublicKeyContext(W1, w);
+                for (i = 0; i < 4; i++) {
+                    M[0] = (byte)i;
+                    ECDH.SP_DSA(sha, rng, S1, M, CS, DS);
+                    if (ECDH.VP_DSA(sha, WC, M, CS, DS) != 0) fail("***ECDSA Verification with Public Key Context Failed");
+                }
+                M[1] ^= 1;
+                if (ECDH.VP_DSA(sha, WC, M, CS, DS) == 0) fail("***ECDSA Verification with Public Key Context accepted a bad signature");
+                M[1] ^= 1;
+            }
+        }
+        System.out.println("Public Key Context succeeded");
+        System.out.println("");
+    }
+
+    public static void testMulVartime() {
+        if (CONFIG_CURVE.CURVETYPE == CONFIG_CURVE.MONTGOMERY) return;
+        byte[] RAW = new byte[100];
+        RAND rng = new RAND();
+        int i;
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        BIG r = CURVE_CONST.CURVE_Order;
+        ECP G = ECP.generator();
+
+        System.out.println("Testing variable time multiplication");
+        for (i = 0; i < 10; i++) {
+            BIG e = BIG.randomnum(r, rng);
+            BIG f = BIG.randomnum(r, rng);
+            ECP P = G.mul(f);
+            if (!P.mul(e).equals(P.mulVartime(e))) fail("***Variable time multiplication Failed");
+            if (!P.mul2(e, G, f).equals(P.mul2Vartime(e, G, f))) fail("***Variable time double multiplication Failed");
+        }
+        System.out.println("Variable time multiplication succeeded");
+        System.out.println("");
+    }
+
     /*
     	public static void main(String[] args)
     	{
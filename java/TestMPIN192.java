@@ -34,6 +34,8 @@
 package org.miracl.core.XXX;  //
 
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import junit.framework.TestCase;      //
 import org.miracl.core.RAND;
 
@@ -268,6 +270,172 @@ public class TestMPIN192 extends TestCase { //
         }
         System.out.println("");
     }
+
+    public static void testMPIN192ServerContext() {
+        RAND rng = new RAND();
+        int EGS = MPIN192.EGS;
+        int EFS = MPIN192.EFS;
+        int G1S = 2 * EFS + 1; /* Group 1 Size */
+        int G2S = 8 * EFS + 1; /* Group 2 Size */
+        int GTS = 24 * EFS;    /* Group T Size */
+        int i, rtn;
+
+        int sha = CONFIG_CURVE.HASH_TYPE;
+
+        byte[] S = new byte[EGS];
+        byte[] SST = new byte[G2S];
+        byte[] TOKEN = new byte[G1S];
+        byte[] SEC = new byte[G1S];
+        byte[] xID = new byte[G1S];
+        byte[] X = new byte[EGS];
+        byte[] Y = new byte[EGS];
+        byte[] E0 = new byte[GTS];
+        byte[] F0 = new byte[GTS];
+        byte[] E1 = new byte[GTS];
+        byte[] F1 = new byte[GTS];
+        byte[] HID = new byte[G1S];
+        byte[] R = new byte[EGS];
+        byte[] Z = new byte[G1S];
+        byte[] W = new byte[EGS];
+        byte[] T = new byte[G1S];
+        byte[] SK0 = new byte[CONFIG_CURVE.AESKEY];
+        byte[] SK1 = new byte[CONFIG_CURVE.AESKEY];
+        byte[] RAW = new byte[100];
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("Testing MPIN server context");
+
+        byte[] CLIENT_ID = "testUser@miracl.com".getBytes();
+        byte[] HCID = MPIN192.HASH_ID(sha, CLIENT_ID, EFS);
+
+        MPIN192.RANDOM_GENERATE(rng, S);
+        MPIN192.GET_CLIENT_SECRET(S, HCID, TOKEN);
+        MPIN192.GET_SERVER_SECRET(S, SST);
+        MPIN192.EXTRACT_PIN(sha, CLIENT_ID, 1234, TOKEN);
+
+        MPIN192ServerContext SC = new MPIN192ServerContext(SST);
+        if (!SC.valid()) fail("FAILURE: MPIN server context rejected a good server secret");
+
+        /* good PIN */
+        MPIN192.CLIENT_1(sha, 0, CLIENT_ID, rng, X, 1234, TOKEN, SEC, xID, null, null);
+        MPIN192.SERVER_1(sha, 0, CLIENT_ID, HID, null);
+        MPIN192.RANDOM_GENERATE(rng, Y);
+        MPIN192.CLIENT_2(X, Y, SEC);
+        rtn = MPIN192.SERVER_2(0, HID, null, Y, SC, xID, null, SEC, E1, F1);
+        if (rtn != 0) fail("FAILURE: SERVER_2 with server context rtn: " + rtn);
+
+        MPIN192.GET_G1_MULTIPLE(rng, 1, R, HCID, Z);
+        MPIN192.GET_G1_MULTIPLE(rng, 0, W, HID, T);
+        byte[] H = MPIN192.HASH_ALL(sha, HCID, xID, null, SEC, Y, Z, T, EFS);
+        MPIN192.SERVER_KEY(sha, Z, SST, W, H, HID, xID, null, SK0);
+        rtn = MPIN192.SERVER_KEY(sha, Z, SC, W, H, HID, xID, null, SK1);
+        if (rtn != 0) fail("FAILURE: SERVER_KEY with server context rtn: " + rtn);
+        for (i = 0; i < CONFIG_CURVE.AESKEY; i++)
+            if (SK0[i] != SK1[i]) fail("FAILURE: SERVER_KEY with server context gave a different key");
+
+        /* bad PIN - must report the same PIN error as without a context */
+        MPIN192.CLIENT_1(sha, 0, CLIENT_ID, rng, X, 1235, TOKEN, SEC, xID, null, null);
+        MPIN192.RANDOM_GENERATE(rng, Y);
+        MPIN192.CLIENT_2(X, Y, SEC);
+        if (MPIN192.SERVER_2(0, HID, null, Y, SST, xID, null, SEC, E0, F0) != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2 accepted a bad PIN");
+        if (MPIN192.SERVER_2(0, HID, null, Y, SC, xID, null, SEC, E1, F1) != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2 with server context accepted a bad PIN");
+        for (i = 0; i < GTS; i++)
+            if (E0[i] != E1[i] || F0[i] != F1[i]) fail("FAILURE: SERVER_2 with server context gave a different PIN error");
+
+        /* PIN error found by baby-step giant-step, with and without threads */
+        ExecutorService ex = Executors.newFixedThreadPool(4);
+        int err = MPIN192.PIN_ERROR(E1, F1);
+        int kerr = MPIN192.KANGAROO(E1, F1);
+        if (err != 1 && err != -1) fail("FAILURE: PIN error not recovered");
+        if (kerr != 0 && kerr != err) fail("FAILURE: PIN_ERROR and KANGAROO disagree");
+        if (MPIN192.PIN_ERROR(E1, F1, ex) != err) fail("FAILURE: PIN error not recovered in parallel");
+
+        MPIN192.CLIENT_1(sha, 0, CLIENT_ID, rng, X, 1234 + 8765 * err, TOKEN, SEC, xID, null, null);
+        MPIN192.RANDOM_GENERATE(rng, Y);
+        MPIN192.CLIENT_2(X, Y, SEC);
+        MPIN192.SERVER_2(0, HID, null, Y, SC, xID, null, SEC, E1, F1);
+        if (MPIN192.PIN_ERROR(E1, F1) != 8765 * err) fail("FAILURE: large PIN error not recovered");
+        if (MPIN192.PIN_ERROR(E1, F1, ex) != 8765 * err) fail("FAILURE: large PIN error not recovered in parallel");
+        if (MPIN192.PIN_ERROR(E1, F1, ex, 4) != 8765 * err) fail("FAILURE: large PIN error not recovered in 4 ranges");
+        if (MPIN192.PIN_ERROR(E1, F1, ex, 1000) != 8765 * err) fail("FAILURE: large PIN error not recovered in 1000 ranges");
+        ex.shutdown();
+        /* a shut down executor rejects the ranges, so the calling thread must search them itself */
+        if (MPIN192.PIN_ERROR(E1, F1, ex, 4) != 8765 * err) fail("FAILURE: large PIN error not recovered by rejected executor");
+
+        System.out.println("MPIN server context succeeded");
+        System.out.println("");
+    }
+
+    public static void testMPINBatch() {
+        RAND rng = new RAND();
+        int EGS = MPIN192.EGS;
+        int EFS = MPIN192.EFS;
+        int G1S = 2 * EFS + 1; /* Group 1 Size */
+        int G2S = 8 * EFS + 1; /* Group 2 Size */
+        int GTS = 24 * EFS;    /* Group T Size */
+        int i, j, n = 5, bad = 2;
+
+        int sha = CONFIG_CURVE.HASH_TYPE;
+
+        byte[] S = new byte[EGS];
+        byte[] SST = new byte[G2S];
+        byte[] TOKEN = new byte[G1S];
+        byte[] X = new byte[EGS];
+        byte[] E0 = new byte[GTS];
+        byte[] F0 = new byte[GTS];
+        byte[][] SEC = new byte[n][G1S];
+        byte[][] xID = new byte[n][G1S];
+        byte[][] Y = new byte[n][EGS];
+        byte[][] HID = new byte[n][G1S];
+        byte[][] E = new byte[n][GTS];
+        byte[][] F = new byte[n][GTS];
+        int[] RES = new int[n];
+        byte[] RAW = new byte[100];
+
+        rng.clean();
+        for (i = 0; i < 100; i++) RAW[i] = (byte)(i);
+        rng.seed(100, RAW);
+
+        System.out.println("Testing MPIN batch verification");
+
+        byte[] CLIENT_ID = "testUser@miracl.com".getBytes();
+        byte[] HCID = MPIN192.HASH_ID(sha, CLIENT_ID, EFS);
+
+        MPIN192.RANDOM_GENERATE(rng, S);
+        MPIN192.GET_CLIENT_SECRET(S, HCID, TOKEN);
+        MPIN192.GET_SERVER_SECRET(S, SST);
+        MPIN192.EXTRACT_PIN(sha, CLIENT_ID, 1234, TOKEN);
+        MPIN192ServerContext SC = new MPIN192ServerContext(SST);
+
+        for (i = 0; i < n; i++) {
+            MPIN192.CLIENT_1(sha, 0, CLIENT_ID, rng, X, (i == bad) ? 1235 : 1234, TOKEN, SEC[i], xID[i], null, null);
+            MPIN192.SERVER_1(sha, 0, CLIENT_ID, HID[i], null);
+            MPIN192.RANDOM_GENERATE(rng, Y[i]);
+            MPIN192.CLIENT_2(X, Y[i], SEC[i]);
+        }
+
+        if (MPIN192.SERVER_2_BATCH(rng, 0, HID, null, Y, SC, xID, null, SEC, E, F, RES) != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2_BATCH accepted a bad PIN");
+        for (i = 0; i < n; i++) {
+            if (i != bad && RES[i] != 0) fail("FAILURE: SERVER_2_BATCH rejected a good PIN");
+            if (i == bad && RES[i] != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2_BATCH did not find the bad PIN");
+        }
+        MPIN192.SERVER_2(0, HID[bad], null, Y[bad], SST, xID[bad], null, SEC[bad], E0, F0);
+        for (j = 0; j < GTS; j++)
+            if (E0[j] != E[bad][j] || F0[j] != F[bad][j]) fail("FAILURE: SERVER_2_BATCH gave a different PIN error");
+
+        RES[bad] = -1;
+        if (MPIN192.SERVER_2_BATCH(rng, 0, HID, null, Y, SC, xID, null, SEC, null, null, RES) != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2_BATCH accepted a bad PIN");
+        if (RES[bad] != MPIN192.BAD_PIN) fail("FAILURE: SERVER_2_BATCH did not find the bad PIN");
+
+        SEC[bad] = SEC[0]; xID[bad] = xID[0]; Y[bad] = Y[0];
+        if (MPIN192.SERVER_2_BATCH(rng, 0, HID, null, Y, SC, xID, null, SEC, null, null, RES) != 0) fail("FAILURE: SERVER_2_BATCH rejected good PINs");
+
+        System.out.println("MPIN batch verification succeeded");
+        System.out.println("");
+    }
     /*
     	public static void main(String[] args)
     	{
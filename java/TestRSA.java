@@ -34,6 +34,9 @@
 package org.miracl.core.XXX;
 
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 import org.miracl.core.RAND;
 
@@ -46,6 +49,19 @@ public class TestRSA extends TestCase {
         System.out.println();
     }
 
+    /* x.y, as an FF of FFLEN words */
+    private static FF times(FF x, FF y) {
+        FF z = new FF(CONFIG_FF.FFLEN);
+        while (x.getlen() < z.getlen()) {
+            FF w = new FF(2 * x.getlen()); w.dscopy(x); x = w;
+        }
+        while (y.getlen() < z.getlen()) {
+            FF w = new FF(2 * y.getlen()); w.dscopy(y); y = w;
+        }
+        z.copy(FF.mul(x, y));
+        return z;
+    }
+
     public static void testRSA() {
         byte[] RAW = new byte[100];
         RAND rng = new RAND();
@@ -112,6 +128,54 @@ public class TestRSA extends TestCase {
         if (cmp) System.out.println("Signature is valid");
         else fail("Signature is INVALID");
 
+        ExecutorService ex = Executors.newSingleThreadExecutor();
+        RSA.DECRYPT(priv, C, ML, ex); /* again, with the CRT halves in parallel */
+        ex.shutdown();
+        for (int j = 0; j < RFS; j++)
+            if (ML[j] != S[j]) fail("Parallel CRT signature differs");
+        System.out.println("Parallel CRT signature matches");
+
+        final ExecutorService one = Executors.newSingleThreadExecutor();
+        final private_key K = priv;
+        final byte[] G = C, H = new byte[RFS];
+        try { /* from the executor's only thread, so the other CRT half has to be done inline */
+            one.submit(new Runnable() {
+                public void run() {
+                    RSA.DECRYPT(K, G, H, one);
+                }
+            }).get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            fail("Parallel CRT stuck on its own executor");
+        }
+        one.shutdownNow();
+        for (int j = 0; j < RFS; j++)
+            if (H[j] != S[j]) fail("Parallel CRT signature differs");
+
+        for (int k = 3; k <= 4; k++) {
+            ex = Executors.newFixedThreadPool(2);
+            System.out.println("Generating " + k + " prime public/private key pair");
+            if (RSA.KEY_PAIR(rng, 65537, k, priv, pub, ex) != 0) { /* primes searched for in parallel */
+                ex.shutdown();
+                if (k == 4 && FF.FF_BITS == 4096) fail("Multi-prime key generation failed");
+                System.out.println("Refused for this modulus");
+                continue;
+            }
+            if (priv.r == null || priv.r.length != k - 2) fail("Multi-prime key has the wrong number of primes");
+            FF n = times(priv.p, priv.q);
+            for (int j = 0; j < k - 2; j++) n = times(n, priv.r[j]);
+            if (FF.comp(n, pub.n) != 0) fail("Multi-prime modulus is not the product of its primes");
+            RSA.DECRYPT(priv, C, S);
+            RSA.ENCRYPT(pub, S, ML);
+            for (int j = 0; j < RFS; j++)
+                if (C[j] != ML[j]) fail("Multi-prime signature is INVALID");
+            RSA.DECRYPT(priv, C, ML, ex);
+            ex.shutdown();
+            for (int j = 0; j < RFS; j++)
+                if (ML[j] != S[j]) fail("Parallel multi-prime signature differs");
+            System.out.println("Multi-prime signature is valid");
+        }
+        if (RSA.KEY_PAIR(rng, 65537, 1, priv, pub) != RSA.BAD_PARAMS) fail("One prime key accepted");
+
         RSA.PRIVATE_KEY_KILL(priv);
         System.out.println("");
 
@@ -35,6 +35,8 @@
 package org.miracl.core.XXX;
 
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import junit.framework.TestCase;
 import org.miracl.core.RAND;
 
@@ -103,6 +105,90 @@ public class TesttimeRSA extends TestCase {
             }
         }
 
+        ExecutorService ex = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        System.out.println("Generating RSA public/private key pair in parallel");
+
+        iterations = 0;
+        start = System.currentTimeMillis();
+        do {
+            RSA.KEY_PAIR(rng, 65537, 2, priv, pub, ex);
+            iterations++;
+            elapsed = (System.currentTimeMillis() - start);
+        } while (elapsed < MIN_TIME * 1000 || iterations < MIN_ITERS);
+        ex.shutdown();
+        dur = (double)elapsed / iterations;
+        System.out.format("RSA gen - %8d iterations  ", iterations);
+        System.out.format(" %8.2f ms per iteration\n", dur);
+
+        int k = 4; /* most primes that can be faster than two - see RSA.KEY_PAIR */
+        while (k > 2 && RSA.KEY_PAIR(rng, 65537, k, priv, pub) != 0) k--;
+        if (k == 2) System.out.println("No multi-prime key is faster for this modulus");
+        else {
+            System.out.println("Generating " + k + " prime RSA public/private key pair");
+
+            iterations = 0;
+            start = System.currentTimeMillis();
+            do {
+                if (RSA.KEY_PAIR(rng, 65537, k, priv, pub) != 0) fail("FAILURE - multi-prime key generation");
+                iterations++;
+                elapsed = (System.currentTimeMillis() - start);
+            } while (elapsed < MIN_TIME * 1000 || iterations < MIN_ITERS);
+            dur = (double)elapsed / iterations;
+            System.out.format("RSA gen - %8d iterations  ", iterations);
+            System.out.format(" %8.2f ms per iteration\n", dur);
+
+            RSA.ENCRYPT(pub, M, C);
+
+            iterations = 0;
+            start = System.currentTimeMillis();
+            do {
+                RSA.DECRYPT(priv, C, P);
+                iterations++;
+                elapsed = (System.currentTimeMillis() - start);
+            } while (elapsed < MIN_TIME * 1000 || iterations < MIN_ITERS);
+            dur = (double)elapsed / iterations;
+            System.out.format("RSA dec - %8d iterations  ", iterations);
+            System.out.format(" %8.2f ms per iteration\n", dur);
+
+            for (i = 0; i < RSA.RFS; i++) {
+                if (P[i] != M[i]) {
+                    fail("FAILURE - multi-prime RSA decryption");
+                }
+            }
+        }
+
+        System.out.println("Calibrating Karatsuba threshold");
+
+        FF x = new FF(CONFIG_FF.FFLEN), y = new FF(CONFIG_FF.FFLEN);
+        FF hx = new FF(FF.HFLEN), hy = new FF(FF.HFLEN);
+        x.random(rng); y.random(rng);
+        hx.random(rng); hy.random(rng);
+
+        int kt, best = CONFIG_FF.KARATSUBA;
+        double bdur = 0;
+        for (kt = 1; kt <= CONFIG_FF.FFLEN; kt *= 2) {
+            for (i = 0; i < 1000; i++) { /* warm up */
+                FF.mul(x, y, kt); FF.sqr(x, kt);
+                FF.mul(hx, hy, kt); FF.sqr(hx, kt);
+            }
+            iterations = 0;
+            start = System.currentTimeMillis();
+            do {
+                FF.mul(x, y, kt); FF.sqr(x, kt);
+                FF.mul(hx, hy, kt); FF.sqr(hx, kt);
+                iterations++;
+                elapsed = (System.currentTimeMillis() - start);
+            } while (elapsed < 1000 || iterations < MIN_ITERS);
+            dur = 1000.0 * elapsed / iterations;
+            System.out.format("Threshold %2d - %8d iterations  ", kt, iterations);
+            System.out.format(" %8.2f us per iteration\n", dur);
+            if (kt == 1 || dur < bdur) {
+                bdur = dur;
+                best = kt;
+            }
+        }
+        System.out.format("Best threshold is %d, configured threshold is %d\n", best, CONFIG_FF.KARATSUBA);
+
         System.out.print("All tests pass\n");
     }
 }
@@ -44,7 +44,7 @@ def replace(namefile,oldtext,newtext):
 	f.close()
 
 
-def rsaset(tb,nb,base,ml) :
+def rsaset(tb,nb,base,ml,kt) :
 	global deltext,slashtext,copytext
 	global cptr,chosen
 
@@ -64,6 +64,7 @@ def rsaset(tb,nb,base,ml) :
 	os.system(copytext+"RSA.java "+fpath+"RSA.java")
 	os.system(copytext+"private_key.java "+fpath+"private_key.java")
 	os.system(copytext+"public_key.java "+fpath+"public_key.java")	
+	os.system(copytext+"FFMontContext.java "+fpath+"FFMontContext.java")
 	os.system(copytext+"TestRSA.java "+fpathTest+"TestRSA.java")	#ms
 	os.system(copytext+"TesttimeRSA.java "+fpathTest+"TesttimeRSA.java")	#ms
 	
@@ -75,6 +76,7 @@ def rsaset(tb,nb,base,ml) :
 	replace(fpath+"RSA.java","XXX",tb)
 	replace(fpath+"private_key.java","XXX",tb)
 	replace(fpath+"public_key.java","XXX",tb)
+	replace(fpath+"FFMontContext.java","XXX",tb)
 	replace(fpathTest+"TestRSA.java","XXX",tb)  #ms
 	replace(fpathTest+"TesttimeRSA.java","XXX",tb)  #ms
 
@@ -82,6 +84,7 @@ def rsaset(tb,nb,base,ml) :
 	replace(fpath+"CONFIG_BIG.java","@BASE@",base)
 
 	replace(fpath+"CONFIG_FF.java","@ML@",ml);
+	replace(fpath+"CONFIG_FF.java","@KT@",kt);
 
 
 def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
@@ -105,11 +108,13 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 	os.system(copytext+"CONFIG_BIG.java "+fpath+"CONFIG_BIG.java")
 	os.system(copytext+"CONFIG_FIELD.java "+fpath+"CONFIG_FIELD.java")
 	os.system(copytext+"CONFIG_CURVE.java "+fpath+"CONFIG_CURVE.java")
+	os.system(copytext+"CURVE_CONST.java "+fpath+"CURVE_CONST.java")
 	os.system(copytext+"BIG32.java "+fpath+"BIG.java")
 	os.system(copytext+"DBIG32.java "+fpath+"DBIG.java")
 	os.system(copytext+"FP32.java "+fpath+"FP.java")
 	os.system(copytext+"ECP.java "+fpath+"ECP.java")
 	os.system(copytext+"ECDH.java "+fpath+"ECDH.java")
+	os.system(copytext+"PublicKeyContext.java "+fpath+"PublicKeyContext.java")
 	os.system(copytext+"ROM_"+tc+"_32.java "+fpath+"ROM.java")
 	os.system(copytext+"TestECDH.java "+fpathTest+"TestECDH.java")	#ms
 	os.system(copytext+"TesttimeECDH.java "+fpathTest+"TesttimeECDH.java")	#ms
@@ -117,11 +122,13 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 	replace(fpath+"CONFIG_BIG.java","XXX",tc)	
 	replace(fpath+"CONFIG_FIELD.java","XXX",tc)	
 	replace(fpath+"CONFIG_CURVE.java","XXX",tc)	
+	replace(fpath+"CURVE_CONST.java","XXX",tc)
 	replace(fpath+"BIG.java","XXX",tc)
 	replace(fpath+"DBIG.java","XXX",tc)
 	replace(fpath+"FP.java","XXX",tc)
 	replace(fpath+"ECP.java","XXX",tc)
 	replace(fpath+"ECDH.java","XXX",tc)
+	replace(fpath+"PublicKeyContext.java","XXX",tc)
 	replace(fpathTest+"TestECDH.java","XXX",tc)  #ms
 	replace(fpathTest+"TesttimeECDH.java","XXX",tc)  #ms
 
@@ -170,9 +177,11 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 	if pf != "NOT" :
 		os.system(copytext+"FP2.java "+fpath+"FP2.java")
 		os.system(copytext+"FP4.java "+fpath+"FP4.java")
+		os.system(copytext+"PAIR_CONST.java "+fpath+"PAIR_CONST.java")
 
 		replace(fpath+"FP2.java","XXX",tc)
 		replace(fpath+"FP4.java","XXX",tc)
+		replace(fpath+"PAIR_CONST.java","XXX",tc)
 
 		if cs == "128" :
 
@@ -180,6 +189,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			os.system(copytext+"FP12.java "+fpath+"FP12.java")
 			os.system(copytext+"PAIR.java "+fpath+"PAIR.java")
 			os.system(copytext+"MPIN.java "+fpath+"MPIN.java")
+			os.system(copytext+"MPINServerContext.java "+fpath+"MPINServerContext.java")
 			os.system(copytext+"BLS.java "+fpath+"BLS.java")
 			os.system(copytext+"TestMPIN.java "+fpathTest+"TestMPIN.java")	#ms
 			os.system(copytext+"TestBLS.java "+fpathTest+"TestBLS.java")	#ms
@@ -189,6 +199,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			replace(fpath+"ECP2.java","XXX",tc)
 			replace(fpath+"PAIR.java","XXX",tc)
 			replace(fpath+"MPIN.java","XXX",tc)
+			replace(fpath+"MPINServerContext.java","XXX",tc)
 			replace(fpath+"BLS.java","XXX",tc)
 			replace(fpathTest+"TestMPIN.java","XXX",tc)  #ms
 			replace(fpathTest+"TestBLS.java","XXX",tc)  #ms
@@ -200,6 +211,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			os.system(copytext+"FP24.java "+fpath+"FP24.java")
 			os.system(copytext+"PAIR192.java "+fpath+"PAIR192.java")
 			os.system(copytext+"MPIN192.java "+fpath+"MPIN192.java")
+			os.system(copytext+"MPIN192ServerContext.java "+fpath+"MPIN192ServerContext.java")
 			os.system(copytext+"BLS192.java "+fpath+"BLS192.java")
 			os.system(copytext+"TestMPIN192.java "+fpathTest+"TestMPIN192.java")	#ms
 			os.system(copytext+"TestBLS192.java "+fpathTest+"TestBLS192.java")	#ms
@@ -210,6 +222,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			replace(fpath+"ECP4.java","XXX",tc)
 			replace(fpath+"PAIR192.java","XXX",tc)
 			replace(fpath+"MPIN192.java","XXX",tc)
+			replace(fpath+"MPIN192ServerContext.java","XXX",tc)
 			replace(fpath+"BLS192.java","XXX",tc)
 			replace(fpathTest+"TestMPIN192.java","XXX",tc)  #ms
 			replace(fpathTest+"TestBLS192.java","XXX",tc)  #ms
@@ -222,6 +235,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			os.system(copytext+"FP48.java "+fpath+"FP48.java")
 			os.system(copytext+"PAIR256.java "+fpath+"PAIR256.java")
 			os.system(copytext+"MPIN256.java "+fpath+"MPIN256.java")
+			os.system(copytext+"MPIN256ServerContext.java "+fpath+"MPIN256ServerContext.java")
 			os.system(copytext+"BLS256.java "+fpath+"BLS256.java")
 			os.system(copytext+"TestMPIN256.java "+fpathTest+"TestMPIN256.java")	#ms
 			os.system(copytext+"TestBLS256.java "+fpathTest+"TestBLS256.java")	#ms
@@ -233,6 +247,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 			replace(fpath+"ECP8.java","XXX",tc)
 			replace(fpath+"PAIR256.java","XXX",tc)
 			replace(fpath+"MPIN256.java","XXX",tc)
+			replace(fpath+"MPIN256ServerContext.java","XXX",tc)
 			replace(fpath+"BLS256.java","XXX",tc)
 			replace(fpathTest+"TestMPIN256.java","XXX",tc)  #ms
 			replace(fpathTest+"TestBLS256.java","XXX",tc)  #ms
@@ -242,7 +257,7 @@ def curveset(tc,base,nbt,m8,mt,qi,ct,pf,stw,sx,g2,ab,cs) :
 os.system(makedir + corepath)
 
 os.system(copytext + "pom.xml " + "core" + slashtext + ".")
-for file in ['HASH*.java', 'HMAC.java', 'SHA3.java', 'RAND.java', 'AES.java', 'GCM.java', 'NHS.java']:
+for file in ['HASH*.java', 'HMAC.java', 'SHA3.java', 'RAND.java', 'AES.java', 'GCM.java', 'NHS.java', 'LRU.java']:
 	os.system(copytext + file + " " + corepath+slashtext+".")
 
 print("Elliptic Curves")
@@ -447,7 +462,7 @@ while ptr<max:
 		curveset("BLS48581","29","581","1","NOT_SPECIAL","10","WEIERSTRASS","BLS","D_TYPE","NEGATIVEX","36","33","256")
 		pfcurve_selected=True
 
-# rsaset(rsaname,big_length_bytes,bits_in_base,multiplier)
+# rsaset(rsaname,big_length_bytes,bits_in_base,multiplier,karatsuba_threshold)
 # The RSA name reflects the modulus size, which is a 2^m multiplier
 # of the underlying big length
 
@@ -455,16 +470,16 @@ while ptr<max:
 	if x==34:
 		#256 is slower but may allow reuse of 256-bit BIGs used for elliptic curve
 		#512 is faster.. but best is 1024
-		rsaset("RSA2048","128","28","2")
-		#rsaset("RSA2048","64","29","4")
-		#rsaset("RSA2048","32","29","8")
+		rsaset("RSA2048","128","28","2","1")
+		#rsaset("RSA2048","64","29","4","2")
+		#rsaset("RSA2048","32","29","8","8")
 		rsa_selected=True
 	if x==35:
-		rsaset("RSA3072","48","28","8")
+		rsaset("RSA3072","48","28","8","8")
 		rsa_selected=True
 	if x==36:
-		#rsaset("RSA4096","32","29","16")
-		rsaset("RSA4096","64","29","8")
+		#rsaset("RSA4096","32","29","16","8")
+		rsaset("RSA4096","64","29","8","8")
 		rsa_selected=True
 
 os.system(copytext+"TestNHS.java "+coreTestPath+slashtext+"TestNHS.java")
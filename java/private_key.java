@@ -34,6 +34,9 @@ package org.miracl.core.XXX;
 
 public final class private_key {
     public FF p, q, dp, dq, c;
+    public FFMontContext mp, mq; /* Montgomery constants for p and q, set up by RSA.KEY_PAIR */
+    public FF[] r, d, t;         /* multi-prime keys only - the primes after p and q, as RFC 8017 (r_i, d_i, t_i) triples, else null */
+    public FFMontContext[] mr;   /* Montgomery constants for each r[i] */
 
     public private_key(int n) {
         p = new FF(n);
@@ -35,6 +35,7 @@ package org.miracl.core.XXX;
 public final class public_key {
     public int e;
     public FF n;
+    public FFMontContext mn; /* Montgomery constants for n, set up by RSA.KEY_PAIR */
 
     public public_key(int m) {
         e = 0;